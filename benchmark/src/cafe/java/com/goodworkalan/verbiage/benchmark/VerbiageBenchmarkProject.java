@@ -0,0 +1,33 @@
+package com.goodworkalan.verbiage.benchmark;
+
+import com.goodworkalan.cafe.ProjectModule;
+import com.goodworkalan.cafe.builder.Builder;
+import com.goodworkalan.cafe.outline.JavaProject;
+
+/**
+ * Builds the project definition for the Verbiage benchmarks.
+ *
+ * @author Alan Gutierrez
+ */
+public class VerbiageBenchmarkProject implements ProjectModule {
+    /**
+     * Build the project definition for the Verbiage benchmarks.
+     *
+     * @param builder
+     *          The project builder.
+     */
+    public void build(Builder builder) {
+        builder
+            .cookbook(JavaProject.class)
+                .produces("com.github.bigeasy.verbiage/verbiage-benchmark/0.1.0.10")
+                .depends()
+                    .production("com.github.bigeasy.verbiage/verbiage/0.1.0.10")
+                    .production("com.github.bigeasy.verbiage/verbiage-slf4j/0.1.0.10")
+                    .production("org.slf4j/slf4j-api/1.7.36")
+                    .production("org.openjdk.jmh/jmh-core/1.37")
+                    .production("org.openjdk.jmh/jmh-generator-annprocess/1.37")
+                    .end()
+                .end()
+            .end();
+    }
+}
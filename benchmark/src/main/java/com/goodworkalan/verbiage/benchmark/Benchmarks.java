@@ -0,0 +1,40 @@
+package com.goodworkalan.verbiage.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the Verbiage benchmarks with the allocation profiler, once with a
+ * single thread and once with a thread for each processor to measure
+ * contention.
+ *
+ * @author Alan Gutierrez
+ */
+public class Benchmarks {
+    /**
+     * Run the benchmarks whose names match the given regular expressions, or
+     * all of the benchmarks in this package if none are given.
+     *
+     * @param args
+     *            The benchmark name patterns.
+     * @throws RunnerException
+     *             If the benchmarks cannot be run.
+     */
+    public static void main(String[] args) throws RunnerException {
+        int[] threads = new int[] { 1, Runtime.getRuntime().availableProcessors() };
+        for (int i = 0; i < threads.length; i++) {
+            OptionsBuilder builder = new OptionsBuilder();
+            if (args.length == 0) {
+                builder.include(Benchmarks.class.getPackage().getName() + ".*");
+            }
+            for (int j = 0; j < args.length; j++) {
+                builder.include(args[j]);
+            }
+            Options options = builder.threads(threads[i]).addProfiler(GCProfiler.class).forks(1).build();
+            new Runner(options).run();
+        }
+    }
+}
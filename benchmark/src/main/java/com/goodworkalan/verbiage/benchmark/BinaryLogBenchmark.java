@@ -0,0 +1,101 @@
+package com.goodworkalan.verbiage.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.goodworkalan.verbiage.BinaryLog;
+import com.goodworkalan.verbiage.Message;
+
+/**
+ * Measures writing messages to a binary log against rendering them. The log
+ * is cleared when it is full.
+ *
+ * @author Alan Gutierrez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BinaryLogBenchmark {
+    /** The message context. */
+    private final static String CONTEXT = BinaryLogBenchmark.class.getCanonicalName();
+
+    /** The binary log. */
+    private BinaryLog log;
+
+    /** A message with many arguments selected by deep paths. */
+    private Message many;
+
+    /** A message with unboxed long and double positioned arguments. */
+    private Message primitives;
+
+    /** Create the log and the messages. */
+    @Setup
+    public void setup() {
+        log = new BinaryLog(ByteBuffer.allocateDirect(16 * 1024 * 1024));
+        Map<String, Object> stage = new HashMap<String, Object>();
+        stage.put("name", "ignition");
+        stage.put("number", 3);
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("threadId", 1L);
+        variables.put("duration", 12.75);
+        variables.put("stage", stage);
+        variables.put("crew", java.util.Arrays.asList("Armstrong", "Aldrin", "Collins"));
+        many = new Message(CONTEXT, "benchmark", "many", variables);
+        primitives = Message.builder(CONTEXT, "benchmark", "primitives").arg(1L).arg(12.75).arg(4096L).build();
+    }
+
+    /**
+     * Write the given message to the log, clearing the log if it is full.
+     *
+     * @param message
+     *            The message.
+     */
+    private void write(Message message) {
+        if (!log.write(message)) {
+            log.clear();
+            log.write(message);
+        }
+    }
+
+    /** Write a message with many arguments to the log. */
+    @Benchmark
+    public void writeMany() {
+        write(many);
+    }
+
+    /** Write a message with unboxed arguments to the log. */
+    @Benchmark
+    public void writePrimitives() {
+        write(primitives);
+    }
+
+    /**
+     * Render a message with many arguments.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String renderMany() {
+        return many.toString();
+    }
+
+    /**
+     * Render a message with unboxed arguments.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String renderPrimitives() {
+        return primitives.toString();
+    }
+}
@@ -0,0 +1,83 @@
+package com.goodworkalan.verbiage.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.goodworkalan.verbiage.Message;
+import com.goodworkalan.verbiage.VerbiageRuntimeException;
+
+/**
+ * Measures the cost of creating messages that are never rendered, such as
+ * messages created as exception payloads or logging arguments, against the
+ * cost of creating and rendering them.
+ *
+ * @author Alan Gutierrez
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConstructionBenchmark {
+    /** The message context. */
+    private final static String CONTEXT = ConstructionBenchmark.class.getCanonicalName();
+
+    /** The map of variables. */
+    private Map<String, Object> variables;
+
+    /** Create the map of variables. */
+    @Setup
+    public void setup() {
+        variables = new HashMap<String, Object>();
+        variables.put("threadId", 1L);
+    }
+
+    /**
+     * Create a message that is never rendered.
+     *
+     * @return The message.
+     */
+    @Benchmark
+    public Message construct() {
+        return new Message(CONTEXT, "benchmark", "one", variables);
+    }
+
+    /**
+     * Create a message and render it.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String constructAndRender() {
+        return new Message(CONTEXT, "benchmark", "one", variables).toString();
+    }
+
+    /**
+     * Create an exception with a stack trace whose message is never
+     * rendered.
+     *
+     * @return The exception.
+     */
+    @Benchmark
+    public VerbiageRuntimeException constructException() {
+        return new VerbiageRuntimeException(new Message(CONTEXT, "benchmark", "one", variables));
+    }
+
+    /**
+     * Create an exception without a stack trace whose message is never
+     * rendered.
+     *
+     * @return The exception.
+     */
+    @Benchmark
+    public VerbiageRuntimeException constructExceptionWithoutStackTrace() {
+        return new VerbiageRuntimeException(new Message(CONTEXT, "benchmark", "one", variables), null, false);
+    }
+}
@@ -0,0 +1,115 @@
+package com.goodworkalan.verbiage.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.Logger;
+
+import com.goodworkalan.verbiage.Message;
+import com.goodworkalan.verbiage.slf4j.MessageLogger;
+
+/**
+ * Measures logging messages through the SLF4J message logger. The disabled
+ * benchmarks are compared to the baseline, which is the level check alone,
+ * to show that a disabled log call costs nothing more than the level check.
+ *
+ * @author Alan Gutierrez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoggingBenchmark {
+    /** A message logger with a logger that has every level disabled. */
+    private MessageLogger disabled;
+
+    /** A message logger with a logger that has every level enabled. */
+    private MessageLogger enabled;
+
+    /** A message that has already been created. */
+    private Message message;
+
+    /** The last message logged by the enabled logger. */
+    private volatile Object logged;
+
+    /**
+     * Create a logger named after this class that keeps the last message
+     * logged.
+     *
+     * @param enabled
+     *            Whether every level is enabled.
+     * @return A logger.
+     */
+    private Logger makeLogger(final boolean enabled) {
+        return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] { Logger.class }, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getName")) {
+                    return LoggingBenchmark.class.getName();
+                }
+                if (method.getName().endsWith("Enabled")) {
+                    return enabled;
+                }
+                logged = args[0];
+                return null;
+            }
+        });
+    }
+
+    /** Create the message loggers. */
+    @Setup
+    public void setup() {
+        disabled = new MessageLogger(makeLogger(false), "benchmark");
+        enabled = new MessageLogger(makeLogger(true), "benchmark");
+        message = Message.builder(LoggingBenchmark.class.getName(), "benchmark", "primitives").arg(1L).arg(12.75).arg(4096L).build();
+    }
+
+    /**
+     * Check the level of the disabled logger.
+     *
+     * @return Whether the level is enabled.
+     */
+    @Benchmark
+    public boolean baseline() {
+        return disabled.getLogger().isDebugEnabled();
+    }
+
+    /**
+     * Log an entry with arguments at a disabled level.
+     */
+    @Benchmark
+    public void disabledEntry() {
+        disabled.debug("primitives").arg(1L).arg(12.75).arg(4096L).log();
+    }
+
+    /**
+     * Log a message at a disabled level.
+     */
+    @Benchmark
+    public void disabledMessage() {
+        disabled.debug(message);
+    }
+
+    /**
+     * Log an entry with arguments at an enabled level.
+     */
+    @Benchmark
+    public void enabledEntry() {
+        enabled.info("primitives").arg(1L).arg(12.75).arg(4096L).log();
+    }
+
+    /**
+     * Log a message at an enabled level.
+     */
+    @Benchmark
+    public void enabledMessage() {
+        enabled.info(message);
+    }
+}
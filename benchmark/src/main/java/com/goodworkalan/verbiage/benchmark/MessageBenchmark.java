@@ -0,0 +1,434 @@
+package com.goodworkalan.verbiage.benchmark;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.goodworkalan.verbiage.Message;
+
+/**
+ * Measures evaluating paths and rendering messages. The messages are shared by
+ * all benchmark threads, so that running with more than one thread measures
+ * contention on the shared caches. Each benchmark is run with and without
+ * pooled scratch buffers.
+ *
+ * @author Alan Gutierrez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageBenchmark {
+    /** The message context. */
+    private final static String CONTEXT = MessageBenchmark.class.getCanonicalName();
+
+    /** Whether messages are rendered using pooled scratch buffers. */
+    @Param({ "false", "true" })
+    public boolean pooling;
+
+    /** A message with no arguments. */
+    private Message none;
+
+    /** A message with one argument. */
+    private Message one;
+
+    /** A message with many arguments selected by deep paths. */
+    private Message many;
+
+    /** A message with many arguments selected by inline placeholders. */
+    private Message manyInline;
+
+    /** A message that expands positioned arguments. */
+    private Message positioned;
+
+    /** A message that expands an array of positioned arguments. */
+    private Message positionedArray;
+
+    /** A message that is a message format pattern with a choice format. */
+    private Message legacy;
+
+    /** A message with boxed long and double positioned arguments. */
+    private Message boxed;
+
+    /** A message with unboxed long and double positioned arguments. */
+    private Message primitives;
+
+    /** A message that selects elements of primitive arrays. */
+    private Message samples;
+
+    /** A message that selects the properties of an object. */
+    private Message bean;
+
+    /** A message with a key missing from the bundle. */
+    private Message missingKey;
+
+    /** A message that selects an argument that is not in the variables. */
+    private Message missingArgument;
+
+    /** A message with a format that cannot be formatted. */
+    private Message formatException;
+
+    /**
+     * A launch stage with bean property getters.
+     */
+    public final static class Stage {
+        /** The stage name. */
+        private final String name;
+
+        /** The stage number. */
+        private final int number;
+
+        /**
+         * Create a stage.
+         *
+         * @param name
+         *            The stage name.
+         * @param number
+         *            The stage number.
+         */
+        public Stage(String name, int number) {
+            this.name = name;
+            this.number = number;
+        }
+
+        /**
+         * Get the stage name.
+         *
+         * @return The stage name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the stage number.
+         *
+         * @return The stage number.
+         */
+        public int getNumber() {
+            return number;
+        }
+    }
+
+    /**
+     * Create a message with the given key and variables.
+     *
+     * @param key
+     *            The message key.
+     * @param variables
+     *            The map of variables.
+     * @return A message.
+     */
+    private static Message message(String key, Map<?, ?> variables) {
+        return new Message(CONTEXT, "benchmark", key, variables);
+    }
+
+    /** Create the messages. */
+    @Setup
+    public void setup() {
+        Message.setPooling(pooling);
+        Message.setAccessors(true);
+        Map<String, Object> stage = new HashMap<String, Object>();
+        stage.put("name", "ignition");
+        stage.put("number", 3);
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("threadId", 1L);
+        variables.put("duration", 12.75);
+        variables.put("stage", stage);
+        variables.put("crew", Arrays.asList("Armstrong", "Aldrin", "Collins"));
+        variables.put("samples", new double[] { 3, 1.25, 12.75 });
+        variables.put("counts", new long[] { 3 });
+        variables.put("rocket", new Stage("ignition", 3));
+        none = message("none", variables);
+        one = message("one", variables);
+        many = message("many", variables);
+        manyInline = message("many_inline", variables);
+        positioned = message("positioned", Message.position(new HashMap<Object, Object>(), "launch.properties", "countdown"));
+        positionedArray = new Message(CONTEXT, "benchmark", "positioned", null, "launch.properties", "countdown");
+        legacy = new Message(CONTEXT, "benchmark", "legacy", null, "launch.properties", 3);
+        boxed = new Message(CONTEXT, "benchmark", "primitives", null, 1L, 12.75, 4096L);
+        primitives = Message.builder(CONTEXT, "benchmark", "primitives").arg(1L).arg(12.75).arg(4096L).build();
+        samples = message("samples", variables);
+        bean = message("bean", variables);
+        missingKey = message("missing", variables);
+        missingArgument = message("many", new HashMap<String, Object>());
+        formatException = message("bad_format", variables);
+    }
+
+    /**
+     * Get a value from the root of the variables.
+     *
+     * @return The value.
+     */
+    @Benchmark
+    public Object getShallow() {
+        return many.get("threadId");
+    }
+
+    /**
+     * Get a value through a nested map.
+     *
+     * @return The value.
+     */
+    @Benchmark
+    public Object getDeep() {
+        return many.get("stage.name");
+    }
+
+    /**
+     * Get a value through a bean property getter.
+     *
+     * @return The value.
+     */
+    @Benchmark
+    public Object getBean() {
+        return many.get("rocket.name");
+    }
+
+    /**
+     * Get a value through a list index.
+     *
+     * @return The value.
+     */
+    @Benchmark
+    public Object getIndex() {
+        return many.get("crew.2");
+    }
+
+    /**
+     * Get a value that is not in the variables.
+     *
+     * @return The value.
+     */
+    @Benchmark
+    public Object getMissing() {
+        return many.get("stage.missing.name");
+    }
+
+    /**
+     * Render a message with no arguments.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String toStringNone() {
+        return none.toString();
+    }
+
+    /**
+     * Render a message with one argument.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String toStringOne() {
+        return one.toString();
+    }
+
+    /**
+     * Render a message with many arguments.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String toStringMany() {
+        return many.toString();
+    }
+
+    /**
+     * Render a message with many arguments in a locale other than the locale
+     * of the message.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String toStringManyGermany() {
+        return many.toString(Locale.GERMANY);
+    }
+
+    /**
+     * Render a message with many arguments selected by inline placeholders.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String toStringManyInline() {
+        return manyInline.toString();
+    }
+
+    /**
+     * Snapshot a message with many arguments.
+     *
+     * @return The snapshot.
+     */
+    @Benchmark
+    public Message snapshotMany() {
+        return many.snapshot();
+    }
+
+    /**
+     * Snapshot a message with many arguments and render the snapshot.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String snapshotToStringMany() {
+        return many.snapshot().toString();
+    }
+
+    /**
+     * Render a message that selects the properties of an object.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String toStringBean() {
+        return bean.toString();
+    }
+
+    /**
+     * Render a message that expands positioned arguments.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String toStringPositioned() {
+        return positioned.toString();
+    }
+
+    /**
+     * Render a message that expands an array of positioned arguments.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String toStringPositionedArray() {
+        return positionedArray.toString();
+    }
+
+    /**
+     * Render a message format pattern with a choice format.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String toStringLegacy() {
+        return legacy.toString();
+    }
+
+    /**
+     * Render a message with boxed long and double arguments.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String toStringBoxed() {
+        return boxed.toString();
+    }
+
+    /**
+     * Render a message with unboxed long and double arguments.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String toStringPrimitives() {
+        return primitives.toString();
+    }
+
+    /**
+     * Render a message that selects elements of primitive arrays.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String toStringSamples() {
+        return samples.toString();
+    }
+
+    /**
+     * Get an element of a primitive array.
+     *
+     * @return The value.
+     */
+    @Benchmark
+    public Object getPrimitiveArray() {
+        return many.get("samples.2");
+    }
+
+    /**
+     * Build and render a message with unboxed long and double arguments.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String buildPrimitives() {
+        return Message.builder(CONTEXT, "benchmark", "primitives").arg(1L).arg(12.75).arg(4096L).build().toString();
+    }
+
+    /**
+     * Render a message with many arguments into a string builder that is
+     * reused by the benchmark thread.
+     *
+     * @param target
+     *            The string builder of the benchmark thread.
+     * @return The length of the rendered message.
+     */
+    @Benchmark
+    public int formatToMany(Target target) {
+        target.builder.setLength(0);
+        many.formatTo(target.builder);
+        return target.builder.length();
+    }
+
+    /**
+     * Render the meta error message for a missing key.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String metaMissingKey() {
+        return missingKey.toString();
+    }
+
+    /**
+     * Render the meta error message for a missing argument.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String metaMissingArgument() {
+        return missingArgument.toString();
+    }
+
+    /**
+     * Render the meta error message for a format exception.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String metaFormatException() {
+        return formatException.toString();
+    }
+
+    /**
+     * A string builder reused by a benchmark thread.
+     *
+     * @author Alan Gutierrez
+     */
+    @State(Scope.Thread)
+    public static class Target {
+        /** The string builder. */
+        public final StringBuilder builder = new StringBuilder();
+    }
+}
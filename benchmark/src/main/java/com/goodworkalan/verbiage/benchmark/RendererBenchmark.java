@@ -0,0 +1,101 @@
+package com.goodworkalan.verbiage.benchmark;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.goodworkalan.verbiage.Message;
+import com.goodworkalan.verbiage.MessageRenderer;
+import com.goodworkalan.verbiage.MessageSink;
+import com.goodworkalan.verbiage.OverflowPolicy;
+
+/**
+ * Measures the cost to the submitting thread of handing a message to a
+ * renderer, compared to rendering the message in the submitting thread.
+ *
+ * @author Alan Gutierrez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RendererBenchmark {
+    /** The executor that runs the renderer workers. */
+    private ExecutorService executor;
+
+    /** The renderer. */
+    private MessageRenderer renderer;
+
+    /** A sink that discards the rendered messages. */
+    private MessageSink sink;
+
+    /** A message with many arguments. */
+    private Message message;
+
+    /** The number of characters written to the sink. */
+    private volatile long written;
+
+    /** Create the renderer and the message. */
+    @Setup
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+        renderer = new MessageRenderer(executor, 1, 4096, 256, OverflowPolicy.DROP);
+        sink = new MessageSink() {
+            public void write(CharSequence text) {
+                written += text.length();
+            }
+        };
+        Map<String, Object> stage = new HashMap<String, Object>();
+        stage.put("name", "ignition");
+        stage.put("number", 3);
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("threadId", 1L);
+        variables.put("duration", 12.75);
+        variables.put("stage", stage);
+        variables.put("crew", Arrays.asList("Armstrong", "Aldrin", "Collins"));
+        message = new Message(RendererBenchmark.class.getCanonicalName(), "benchmark", "many", variables);
+    }
+
+    /**
+     * Stop the renderer.
+     *
+     * @exception InterruptedException
+     *                If the thread is interrupted while it waits.
+     */
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        renderer.shutdown();
+        executor.shutdown();
+    }
+
+    /**
+     * Render the message in the benchmark thread.
+     *
+     * @return The rendered message.
+     */
+    @Benchmark
+    public String render() {
+        return message.toString();
+    }
+
+    /**
+     * Submit the message to the renderer.
+     *
+     * @return True if the message was queued.
+     */
+    @Benchmark
+    public boolean submit() {
+        return renderer.submit(message, sink);
+    }
+}
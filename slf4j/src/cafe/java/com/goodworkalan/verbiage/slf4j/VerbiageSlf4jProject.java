@@ -0,0 +1,31 @@
+package com.goodworkalan.verbiage.slf4j;
+
+import com.goodworkalan.cafe.ProjectModule;
+import com.goodworkalan.cafe.builder.Builder;
+import com.goodworkalan.cafe.outline.JavaProject;
+
+/**
+ * Builds the project definition for the Verbiage SLF4J adapter.
+ *
+ * @author Alan Gutierrez
+ */
+public class VerbiageSlf4jProject implements ProjectModule {
+    /**
+     * Build the project definition for the Verbiage SLF4J adapter.
+     *
+     * @param builder
+     *          The project builder.
+     */
+    public void build(Builder builder) {
+        builder
+            .cookbook(JavaProject.class)
+                .produces("com.github.bigeasy.verbiage/verbiage-slf4j/0.1.0.10")
+                .depends()
+                    .production("com.github.bigeasy.verbiage/verbiage/0.1.0.10")
+                    .production("org.slf4j/slf4j-api/1.7.36")
+                    .development("org.testng/testng-jdk15/5.10")
+                    .end()
+                .end()
+            .end();
+    }
+}
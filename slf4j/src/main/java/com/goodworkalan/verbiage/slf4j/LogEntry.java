@@ -0,0 +1,164 @@
+package com.goodworkalan.verbiage.slf4j;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+
+import com.goodworkalan.verbiage.MessageBuilder;
+
+/**
+ * An entry in a log that binds the arguments of a message and logs the
+ * message when the entry is logged. An entry is only created when the level
+ * of the entry is enabled. When the level is not enabled, the shared disabled
+ * entry is returned in its place, which ignores its arguments and logs
+ * nothing.
+ * <p>
+ * Integer, long and double arguments are bound without boxing.
+ *
+ * @author Alan Gutierrez
+ */
+public class LogEntry {
+    /** The name of this class, given to location aware loggers. */
+    private final static String FQCN = LogEntry.class.getName();
+
+    /** The entry returned when the level of the entry is not enabled. */
+    final static LogEntry DISABLED = new LogEntry(null, 0, null, null);
+
+    /** The logger or null if the entry is disabled. */
+    private final Logger logger;
+
+    /** The level as a <code>LocationAwareLogger</code> level. */
+    private final int level;
+
+    /** The message builder or null if the entry is disabled. */
+    private final MessageBuilder builder;
+
+    /** The cause or null if there is no cause. */
+    private Throwable cause;
+
+    /**
+     * Create a log entry for the message with the given key in the bundle
+     * with the given name in the package named by the logger name.
+     *
+     * @param logger
+     *            The logger.
+     * @param level
+     *            The level as a <code>LocationAwareLogger</code> level.
+     * @param bundleName
+     *            The message bundle file name.
+     * @param key
+     *            The message key.
+     */
+    LogEntry(Logger logger, int level, String bundleName, String key) {
+        this.logger = logger;
+        this.level = level;
+        this.builder = logger == null ? null : new MessageBuilder(logger.getName(), bundleName, key);
+    }
+
+    /**
+     * Set the map of named variables.
+     *
+     * @param variables
+     *            The map of variables.
+     * @return This entry.
+     */
+    public LogEntry variables(Map<?, ?> variables) {
+        if (builder != null) {
+            builder.variables(variables);
+        }
+        return this;
+    }
+
+    /**
+     * Add a positioned integer argument.
+     *
+     * @param value
+     *            The argument.
+     * @return This entry.
+     */
+    public LogEntry arg(int value) {
+        if (builder != null) {
+            builder.arg(value);
+        }
+        return this;
+    }
+
+    /**
+     * Add a positioned long argument.
+     *
+     * @param value
+     *            The argument.
+     * @return This entry.
+     */
+    public LogEntry arg(long value) {
+        if (builder != null) {
+            builder.arg(value);
+        }
+        return this;
+    }
+
+    /**
+     * Add a positioned double argument.
+     *
+     * @param value
+     *            The argument.
+     * @return This entry.
+     */
+    public LogEntry arg(double value) {
+        if (builder != null) {
+            builder.arg(value);
+        }
+        return this;
+    }
+
+    /**
+     * Add a positioned character argument.
+     *
+     * @param value
+     *            The argument.
+     * @return This entry.
+     */
+    public LogEntry arg(char value) {
+        if (builder != null) {
+            builder.arg(value);
+        }
+        return this;
+    }
+
+    /**
+     * Add a positioned object argument.
+     *
+     * @param value
+     *            The argument.
+     * @return This entry.
+     */
+    public LogEntry arg(Object value) {
+        if (builder != null) {
+            builder.arg(value);
+        }
+        return this;
+    }
+
+    /**
+     * Set the cause to log with the message.
+     *
+     * @param cause
+     *            The cause.
+     * @return This entry.
+     */
+    public LogEntry cause(Throwable cause) {
+        if (builder != null) {
+            this.cause = cause;
+        }
+        return this;
+    }
+
+    /**
+     * Render the message and log it, if the entry is not disabled.
+     */
+    public void log() {
+        if (builder != null) {
+            MessageLogger.log(logger, level, FQCN, builder.build(), cause);
+        }
+    }
+}
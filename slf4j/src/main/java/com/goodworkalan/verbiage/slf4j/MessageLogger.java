@@ -0,0 +1,302 @@
+package com.goodworkalan.verbiage.slf4j;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.spi.LocationAwareLogger;
+
+import com.goodworkalan.verbiage.Message;
+
+/**
+ * Logs internationalized messages to an SLF4J logger, rendering a message only
+ * if the level of the message is enabled.
+ * <p>
+ * The name of the logger is used as the message context, so that the message
+ * bundle is found in the package of the class that the logger is named
+ * after. A message is logged either by creating an entry with the message
+ * key, binding the arguments of the entry, and logging it, or by logging a
+ * message that has already been created.
+ *
+ * <code><pre>
+ * MessageLogger log = MessageLogger.getLogger(Launch.class, "log");
+ * log.info("launched").arg(threadId).arg(seconds).log();
+ * </pre></code>
+ * <p>
+ * When the level is not enabled, the entry methods return a shared entry that
+ * ignores its arguments, so that a disabled call costs the level check and
+ * nothing more. The message methods check the level before the message is
+ * rendered.
+ *
+ * @author Alan Gutierrez
+ */
+public class MessageLogger {
+    /** The name of this class, given to location aware loggers. */
+    private final static String FQCN = MessageLogger.class.getName();
+
+    /** The logger. */
+    private final Logger logger;
+
+    /** The message bundle file name. */
+    private final String bundleName;
+
+    /**
+     * Create a message logger that logs messages from the given bundle to the
+     * given logger.
+     *
+     * @param logger
+     *            The logger.
+     * @param bundleName
+     *            The message bundle file name.
+     */
+    public MessageLogger(Logger logger, String bundleName) {
+        this.logger = logger;
+        this.bundleName = bundleName;
+    }
+
+    /**
+     * Create a message logger that logs messages from the bundle with the
+     * given name in the package of the given class to the logger named after
+     * the given class.
+     *
+     * @param klass
+     *            The class.
+     * @param bundleName
+     *            The message bundle file name.
+     * @return A message logger.
+     */
+    public static MessageLogger getLogger(Class<?> klass, String bundleName) {
+        return new MessageLogger(LoggerFactory.getLogger(klass), bundleName);
+    }
+
+    /**
+     * Get the logger.
+     *
+     * @return The logger.
+     */
+    public Logger getLogger() {
+        return logger;
+    }
+
+    /**
+     * Get the message bundle file name.
+     *
+     * @return The message bundle file name.
+     */
+    public String getBundleName() {
+        return bundleName;
+    }
+
+    /**
+     * Whether the TRACE level is enabled.
+     *
+     * @return True if the TRACE level is enabled.
+     */
+    public boolean isTraceEnabled() {
+        return logger.isTraceEnabled();
+    }
+
+    /**
+     * Create an entry for the message with the given key at the TRACE level.
+     * If the level is not enabled, a shared entry that ignores its arguments
+     * is returned.
+     *
+     * @param key
+     *            The message key.
+     * @return A log entry.
+     */
+    public LogEntry trace(String key) {
+        return logger.isTraceEnabled() ? new LogEntry(logger, LocationAwareLogger.TRACE_INT, bundleName, key) : LogEntry.DISABLED;
+    }
+
+    /**
+     * Log the given message at the TRACE level, rendering it only if the level
+     * is enabled.
+     *
+     * @param message
+     *            The message.
+     */
+    public void trace(Message message) {
+        if (logger.isTraceEnabled()) {
+            log(logger, LocationAwareLogger.TRACE_INT, FQCN, message, null);
+        }
+    }
+
+    /**
+     * Whether the DEBUG level is enabled.
+     *
+     * @return True if the DEBUG level is enabled.
+     */
+    public boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+
+    /**
+     * Create an entry for the message with the given key at the DEBUG level.
+     * If the level is not enabled, a shared entry that ignores its arguments
+     * is returned.
+     *
+     * @param key
+     *            The message key.
+     * @return A log entry.
+     */
+    public LogEntry debug(String key) {
+        return logger.isDebugEnabled() ? new LogEntry(logger, LocationAwareLogger.DEBUG_INT, bundleName, key) : LogEntry.DISABLED;
+    }
+
+    /**
+     * Log the given message at the DEBUG level, rendering it only if the level
+     * is enabled.
+     *
+     * @param message
+     *            The message.
+     */
+    public void debug(Message message) {
+        if (logger.isDebugEnabled()) {
+            log(logger, LocationAwareLogger.DEBUG_INT, FQCN, message, null);
+        }
+    }
+
+    /**
+     * Whether the INFO level is enabled.
+     *
+     * @return True if the INFO level is enabled.
+     */
+    public boolean isInfoEnabled() {
+        return logger.isInfoEnabled();
+    }
+
+    /**
+     * Create an entry for the message with the given key at the INFO level.
+     * If the level is not enabled, a shared entry that ignores its arguments
+     * is returned.
+     *
+     * @param key
+     *            The message key.
+     * @return A log entry.
+     */
+    public LogEntry info(String key) {
+        return logger.isInfoEnabled() ? new LogEntry(logger, LocationAwareLogger.INFO_INT, bundleName, key) : LogEntry.DISABLED;
+    }
+
+    /**
+     * Log the given message at the INFO level, rendering it only if the level
+     * is enabled.
+     *
+     * @param message
+     *            The message.
+     */
+    public void info(Message message) {
+        if (logger.isInfoEnabled()) {
+            log(logger, LocationAwareLogger.INFO_INT, FQCN, message, null);
+        }
+    }
+
+    /**
+     * Whether the WARN level is enabled.
+     *
+     * @return True if the WARN level is enabled.
+     */
+    public boolean isWarnEnabled() {
+        return logger.isWarnEnabled();
+    }
+
+    /**
+     * Create an entry for the message with the given key at the WARN level.
+     * If the level is not enabled, a shared entry that ignores its arguments
+     * is returned.
+     *
+     * @param key
+     *            The message key.
+     * @return A log entry.
+     */
+    public LogEntry warn(String key) {
+        return logger.isWarnEnabled() ? new LogEntry(logger, LocationAwareLogger.WARN_INT, bundleName, key) : LogEntry.DISABLED;
+    }
+
+    /**
+     * Log the given message at the WARN level, rendering it only if the level
+     * is enabled.
+     *
+     * @param message
+     *            The message.
+     */
+    public void warn(Message message) {
+        if (logger.isWarnEnabled()) {
+            log(logger, LocationAwareLogger.WARN_INT, FQCN, message, null);
+        }
+    }
+
+    /**
+     * Whether the ERROR level is enabled.
+     *
+     * @return True if the ERROR level is enabled.
+     */
+    public boolean isErrorEnabled() {
+        return logger.isErrorEnabled();
+    }
+
+    /**
+     * Create an entry for the message with the given key at the ERROR level.
+     * If the level is not enabled, a shared entry that ignores its arguments
+     * is returned.
+     *
+     * @param key
+     *            The message key.
+     * @return A log entry.
+     */
+    public LogEntry error(String key) {
+        return logger.isErrorEnabled() ? new LogEntry(logger, LocationAwareLogger.ERROR_INT, bundleName, key) : LogEntry.DISABLED;
+    }
+
+    /**
+     * Log the given message at the ERROR level, rendering it only if the level
+     * is enabled.
+     *
+     * @param message
+     *            The message.
+     */
+    public void error(Message message) {
+        if (logger.isErrorEnabled()) {
+            log(logger, LocationAwareLogger.ERROR_INT, FQCN, message, null);
+        }
+    }
+
+    /**
+     * Render the given message and log it with the given cause at the given
+     * level. If the logger is location aware, the given class name is the
+     * class whose caller is reported as the location of the log call.
+     *
+     * @param logger
+     *            The logger.
+     * @param level
+     *            The level as a <code>LocationAwareLogger</code> level.
+     * @param fqcn
+     *            The fully qualified name of the class called to log.
+     * @param message
+     *            The message.
+     * @param cause
+     *            The cause or null.
+     */
+    static void log(Logger logger, int level, String fqcn, Message message, Throwable cause) {
+        String rendered = message.toString();
+        if (logger instanceof LocationAwareLogger) {
+            ((LocationAwareLogger) logger).log(null, fqcn, level, rendered, null, cause);
+            return;
+        }
+        switch (level) {
+        case LocationAwareLogger.TRACE_INT:
+            logger.trace(rendered, cause);
+            break;
+        case LocationAwareLogger.DEBUG_INT:
+            logger.debug(rendered, cause);
+            break;
+        case LocationAwareLogger.INFO_INT:
+            logger.info(rendered, cause);
+            break;
+        case LocationAwareLogger.WARN_INT:
+            logger.warn(rendered, cause);
+            break;
+        default:
+            logger.error(rendered, cause);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.goodworkalan.verbiage.slf4j;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.testng.annotations.Test;
+
+import com.goodworkalan.verbiage.Message;
+
+/**
+ * Test cases for the MessageLogger class.
+ *
+ * @author Alan Gutierrez
+ */
+public class MessageLoggerTest {
+    /**
+     * Create a logger that records the methods called to log and the logged
+     * messages, with only the INFO level and above enabled.
+     *
+     * @param calls
+     *            The list of method names and logged messages.
+     * @return A logger.
+     */
+    private Logger makeLogger(final List<Object> calls) {
+        return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] { Logger.class }, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getName")) {
+                    return MessageLoggerTest.class.getName();
+                }
+                if (name.endsWith("Enabled")) {
+                    return !name.equals("isTraceEnabled") && !name.equals("isDebugEnabled");
+                }
+                calls.add(name);
+                calls.add(args[0]);
+                calls.add(args.length == 1 ? null : args[1]);
+                return null;
+            }
+        });
+    }
+
+    /** Check that an entry is logged when its level is enabled. */
+    @Test
+    public void entry() {
+        List<Object> calls = new ArrayList<Object>();
+        MessageLogger log = new MessageLogger(makeLogger(calls), "log_messages");
+        IllegalStateException cause = new IllegalStateException();
+        log.info("launched").arg(7L).arg(1.5).log();
+        log.warn("named").variables(Collections.singletonMap("stage", "ignition")).cause(cause).log();
+        assertEquals(calls.get(0), "info");
+        assertEquals(calls.get(1), "Launched in thread 7 after 1.50 seconds.");
+        assertNull(calls.get(2));
+        assertEquals(calls.get(3), "warn");
+        assertEquals(calls.get(4), "Reached stage ignition.");
+        assertSame(calls.get(5), cause);
+        log.info("graded").arg('A').log();
+        assertEquals(calls.get(7), "Graded A.");
+    }
+
+    /** Check that nothing is rendered or logged when the level is disabled. */
+    @Test
+    public void disabled() {
+        List<Object> calls = new ArrayList<Object>();
+        MessageLogger log = new MessageLogger(makeLogger(calls), "log_messages");
+        assertSame(log.debug("launched"), LogEntry.DISABLED);
+        log.debug("launched").arg(7L).arg(1.5).cause(new IllegalStateException()).log();
+        log.trace(new Message("DefaultPackage", "log_messages", "launched", null) {
+            public String toString() {
+                throw new AssertionError();
+            }
+        });
+        assertEquals(calls.size(), 0);
+    }
+
+    /** Check logging a message. */
+    @Test
+    public void message() {
+        List<Object> calls = new ArrayList<Object>();
+        MessageLogger log = new MessageLogger(makeLogger(calls), "log_messages");
+        log.error(new Message(MessageLoggerTest.class.getName(), "log_messages", "launched", null, 1, 2.0));
+        assertEquals(calls.get(0), "error");
+        assertEquals(calls.get(1), "Launched in thread 1 after 2.00 seconds.");
+        assertNull(calls.get(2));
+    }
+}
@@ -0,0 +1,321 @@
+package com.goodworkalan.verbiage;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Property accessors used to dereference path parts against objects that are
+ * not maps, lists or arrays.
+ * <p>
+ * A property named <code>name</code> is read by the first of a public
+ * <code>getName</code> method, a public <code>isName</code> method that
+ * returns a boolean, the <code>name</code> accessor of a record component, or
+ * a public <code>name</code> field. Other methods are never called, so that a
+ * path cannot call a method with side effects, such as
+ * <code>File.delete</code>. Getters that declare checked exceptions are not
+ * read.
+ * <p>
+ * Access checks are not overridden. A method of a class that is not public is
+ * called through the same method of a public superclass or interface, and
+ * the fields and methods of a class that is not public are otherwise not
+ * read. The accessor is resolved once for each class and property name and
+ * cached as a method handle, so that reading a property does not use
+ * reflection.
+ *
+ * @author Alan Gutierrez
+ */
+final class Accessors {
+    /** The accessor of a property that cannot be read. */
+    private final static Accessor NONE = new Accessor(null, null, Arguments.OBJECT);
+
+    /** The type of an accessor that takes an object and returns an object. */
+    private final static MethodType OBJECT_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /** The type of an accessor that takes an object and returns a long. */
+    private final static MethodType LONG_TYPE = MethodType.methodType(long.class, Object.class);
+
+    /** The type of an accessor that takes an object and returns a double. */
+    private final static MethodType DOUBLE_TYPE = MethodType.methodType(double.class, Object.class);
+
+    /** The lookup used to create method handles. */
+    private final static MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    /** The cache of accessors by class and property name. */
+    private final static ClassValue<ConcurrentMap<String, Accessor>> cache = new ClassValue<ConcurrentMap<String, Accessor>>() {
+        protected ConcurrentMap<String, Accessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<String, Accessor>();
+        }
+    };
+
+    /**
+     * Whether properties are read from objects that are not maps, lists or
+     * arrays, initially set by the
+     * <code>com.goodworkalan.verbiage.accessors</code> system property.
+     */
+    static volatile boolean enabled = Boolean.getBoolean("com.goodworkalan.verbiage.accessors");
+
+    /** This is a utility class. */
+    private Accessors() {
+    }
+
+    /**
+     * Read the property with the given name from the given object, calling
+     * its accessor once. If format arguments are given and the property is an
+     * integer, long or double, the property is added to the format arguments
+     * without boxing it.
+     *
+     * @param object
+     *            The object.
+     * @param name
+     *            The property name.
+     * @param arguments
+     *            The format arguments or null.
+     * @return The property value, <code>PathExpression.BOUND</code> if the
+     *         property was added to the format arguments, or
+     *         <code>PathExpression.MISSING</code> if the property cannot be
+     *         read or its accessor throws a runtime exception.
+     * @exception UndeclaredThrowableException
+     *                If the accessor throws a checked exception it does not
+     *                declare.
+     */
+    public static Object get(Object object, String name, Arguments arguments) {
+        Accessor accessor = getAccessor(object.getClass(), name);
+        if (accessor == NONE) {
+            return PathExpression.MISSING;
+        }
+        try {
+            if (arguments == null || accessor.primitive == null) {
+                return (Object) accessor.object.invokeExact(object);
+            }
+            switch (accessor.type) {
+            case Arguments.INT:
+                arguments.add((int) (long) accessor.primitive.invokeExact(object));
+                break;
+            case Arguments.LONG:
+                arguments.add((long) accessor.primitive.invokeExact(object));
+                break;
+            default:
+                arguments.add((double) accessor.primitive.invokeExact(object));
+                break;
+            }
+            return PathExpression.BOUND;
+        } catch (RuntimeException e) {
+            return PathExpression.MISSING;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    /**
+     * Get the accessor of the property with the given name of the given
+     * class, resolving it if it has not already been resolved.
+     *
+     * @param type
+     *            The class.
+     * @param name
+     *            The property name.
+     * @return The accessor or <code>NONE</code> if the property cannot be
+     *         read.
+     */
+    private static Accessor getAccessor(Class<?> type, String name) {
+        ConcurrentMap<String, Accessor> accessors = cache.get(type);
+        Accessor accessor = accessors.get(name);
+        if (accessor == null) {
+            accessor = resolve(type, name);
+            accessors.putIfAbsent(name, accessor);
+        }
+        return accessor;
+    }
+
+    /**
+     * Find the method or field that reads the property with the given name of
+     * the given class and create its accessor.
+     *
+     * @param type
+     *            The class.
+     * @param name
+     *            The property name.
+     * @return The accessor or <code>NONE</code> if the property cannot be
+     *         read.
+     */
+    private static Accessor resolve(Class<?> type, String name) {
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        try {
+            Method method = getMethod(type, "get" + suffix);
+            if (method == null) {
+                method = getMethod(type, "is" + suffix);
+                if (method != null && method.getReturnType() != boolean.class && method.getReturnType() != Boolean.class) {
+                    method = null;
+                }
+            }
+            if (method == null && isRecordComponent(type, name)) {
+                method = getMethod(type, name);
+            }
+            if (method != null) {
+                return newAccessor(lookup.unreflect(method));
+            }
+            Field field = type.getField(name);
+            if (Modifier.isStatic(field.getModifiers()) || !Modifier.isPublic(field.getDeclaringClass().getModifiers())) {
+                return NONE;
+            }
+            return newAccessor(lookup.unreflectGetter(field));
+        } catch (ReflectiveOperationException e) {
+            return NONE;
+        } catch (RuntimeException e) {
+            return NONE;
+        }
+    }
+
+    /**
+     * Determine whether the given class is a record with a component of the
+     * given name. The record is detected by its superclass and its component
+     * by the private final field that holds it, so that this class does not
+     * require the record reflection of Java 16.
+     *
+     * @param type
+     *            The class.
+     * @param name
+     *            The component name.
+     * @return True if the class is a record with the component.
+     */
+    private static boolean isRecordComponent(Class<?> type, String name) {
+        if (type.getSuperclass() == null || !type.getSuperclass().getName().equals("java.lang.Record")) {
+            return false;
+        }
+        try {
+            int modifiers = type.getDeclaredField(name).getModifiers();
+            return Modifier.isPrivate(modifiers) && Modifier.isFinal(modifiers) && !Modifier.isStatic(modifiers);
+        } catch (NoSuchFieldException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Get the public instance method with the given name that takes no
+     * parameters, returns a value and declares no checked exceptions, as it
+     * is declared by the given class or the first of its superclasses and
+     * interfaces that is public, so that it can be called without overriding
+     * access checks. The methods declared by <code>Object</code> are excluded.
+     *
+     * @param type
+     *            The class.
+     * @param name
+     *            The method name.
+     * @return The method or null if there is no such method.
+     */
+    private static Method getMethod(Class<?> type, String name) {
+        List<Class<?>> types = new ArrayList<Class<?>>();
+        types.add(type);
+        for (int i = 0; i < types.size(); i++) {
+            Class<?> candidate = types.get(i);
+            if (candidate == Object.class) {
+                continue;
+            }
+            if (Modifier.isPublic(candidate.getModifiers())) {
+                Method method;
+                try {
+                    method = candidate.getDeclaredMethod(name);
+                } catch (NoSuchMethodException e) {
+                    method = null;
+                }
+                if (method != null && Modifier.isPublic(method.getModifiers())) {
+                    if (Modifier.isStatic(method.getModifiers()) || method.getReturnType() == void.class || isThrowing(method)) {
+                        return null;
+                    }
+                    return method;
+                }
+            }
+            if (candidate.getSuperclass() != null) {
+                types.add(candidate.getSuperclass());
+            }
+            for (Class<?> iface : candidate.getInterfaces()) {
+                types.add(iface);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Determine whether the given method declares checked exceptions.
+     *
+     * @param method
+     *            The method.
+     * @return True if the method declares checked exceptions.
+     */
+    private static boolean isThrowing(Method method) {
+        for (Class<?> exception : method.getExceptionTypes()) {
+            if (!RuntimeException.class.isAssignableFrom(exception) && !Error.class.isAssignableFrom(exception)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Create an accessor from the given method handle, adapting it to take
+     * and return an object, and if it returns an integer, long or double,
+     * adapting it to return the primitive value as well.
+     *
+     * @param handle
+     *            The method handle.
+     * @return An accessor.
+     */
+    private static Accessor newAccessor(MethodHandle handle) {
+        Class<?> returnType = handle.type().returnType();
+        MethodHandle object = handle.asType(OBJECT_TYPE);
+        if (returnType == int.class) {
+            return new Accessor(object, handle.asType(LONG_TYPE), Arguments.INT);
+        } else if (returnType == long.class) {
+            return new Accessor(object, handle.asType(LONG_TYPE), Arguments.LONG);
+        } else if (returnType == double.class) {
+            return new Accessor(object, handle.asType(DOUBLE_TYPE), Arguments.DOUBLE);
+        }
+        return new Accessor(object, null, Arguments.OBJECT);
+    }
+
+    /**
+     * The method handles that read a property.
+     */
+    private final static class Accessor {
+        /** The method handle that returns the property as an object. */
+        public final MethodHandle object;
+
+        /**
+         * The method handle that returns the property as a long or double or
+         * null if the property is not an integer, long or double.
+         */
+        public final MethodHandle primitive;
+
+        /** The argument type of the primitive property. */
+        public final byte type;
+
+        /**
+         * Create an accessor.
+         *
+         * @param object
+         *            The method handle that returns the property as an
+         *            object.
+         * @param primitive
+         *            The method handle that returns the property as a long or
+         *            double or null.
+         * @param type
+         *            The argument type of the primitive property.
+         */
+        public Accessor(MethodHandle object, MethodHandle primitive, byte type) {
+            this.object = object;
+            this.primitive = primitive;
+            this.type = type;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.goodworkalan.verbiage;
+
+/**
+ * Converts format arguments of a type to their text in formatted messages.
+ * Converters are registered for a type with
+ * <code>Message.registerConverter</code> and apply to arguments of that type
+ * and its subtypes.
+ * <p>
+ * A converter writes the text of an argument directly to the string builder
+ * of the formatted message when the argument is formatted with
+ * <code>%s</code>. For any other conversion, the argument is replaced by the
+ * value returned by <code>convert</code>, which by default is the text of the
+ * argument, but can be a number for an argument that should be formatted as a
+ * number.
+ *
+ * @author Alan Gutierrez
+ *
+ * @param <T>
+ *            The type of argument.
+ */
+public abstract class ArgumentConverter<T> {
+    /**
+     * Write the text of the given argument to the given string builder.
+     *
+     * @param builder
+     *            The string builder.
+     * @param value
+     *            The argument, which is never null.
+     */
+    public abstract void write(StringBuilder builder, T value);
+
+    /**
+     * Convert the given argument to the value given to conversions other than
+     * <code>%s</code>. This implementation returns the text written by
+     * <code>write</code>.
+     *
+     * @param value
+     *            The argument, which is never null.
+     * @return The converted argument.
+     */
+    public Object convert(T value) {
+        StringBuilder builder = new StringBuilder();
+        write(builder, value);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,247 @@
+package com.goodworkalan.verbiage;
+
+import java.util.Arrays;
+
+/**
+ * A list of format arguments that stores integers, longs and doubles without
+ * boxing them, so that they can be written by the hand written conversions of
+ * a compiled format directly.
+ * <p>
+ * An argument list can wrap an array of objects without copying it. The type
+ * and primitive arrays are only allocated when a primitive is added.
+ *
+ * @author Alan Gutierrez
+ */
+final class Arguments {
+    /** The type of an object argument. */
+    final static byte OBJECT = 0;
+
+    /** The type of an integer argument. */
+    final static byte INT = 1;
+
+    /** The type of a long argument. */
+    final static byte LONG = 2;
+
+    /** The type of a double argument. */
+    final static byte DOUBLE = 3;
+
+    /** The object arguments. */
+    private Object[] objects;
+
+    /**
+     * The argument types or null if all of the arguments are objects.
+     */
+    private byte[] types;
+
+    /**
+     * The primitive arguments, with doubles stored as their raw long bits, or
+     * null if all of the arguments are objects.
+     */
+    private long[] primitives;
+
+    /** The count of arguments. */
+    private int size;
+
+    /**
+     * Create an empty argument list with the given initial capacity.
+     *
+     * @param capacity
+     *            The initial capacity.
+     */
+    public Arguments(int capacity) {
+        this.objects = new Object[capacity];
+    }
+
+    /**
+     * Create an argument list of the given objects. The array is used as the
+     * storage of the argument list and is not copied.
+     *
+     * @param objects
+     *            The object arguments.
+     */
+    public Arguments(Object[] objects) {
+        this.objects = objects;
+        this.size = objects.length;
+    }
+
+    /**
+     * Get the count of arguments.
+     *
+     * @return The count of arguments.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the type of the argument at the given index, one of
+     * <code>OBJECT</code>, <code>INT</code>, <code>LONG</code> or
+     * <code>DOUBLE</code>.
+     *
+     * @param index
+     *            The argument index.
+     * @return The argument type.
+     */
+    public byte getType(int index) {
+        return types == null ? OBJECT : types[index];
+    }
+
+    /**
+     * Get the argument at the given index, boxing it if it is a primitive.
+     *
+     * @param index
+     *            The argument index.
+     * @return The argument.
+     */
+    public Object get(int index) {
+        switch (getType(index)) {
+        case INT:
+            return (int) primitives[index];
+        case LONG:
+            return primitives[index];
+        case DOUBLE:
+            return Double.longBitsToDouble(primitives[index]);
+        default:
+            return objects[index];
+        }
+    }
+
+    /**
+     * Get the integer or long argument at the given index.
+     *
+     * @param index
+     *            The argument index.
+     * @return The argument value.
+     */
+    public long getLong(int index) {
+        return primitives[index];
+    }
+
+    /**
+     * Get the double argument at the given index.
+     *
+     * @param index
+     *            The argument index.
+     * @return The argument value.
+     */
+    public double getDouble(int index) {
+        return Double.longBitsToDouble(primitives[index]);
+    }
+
+    /**
+     * Make room for one more argument, allocating the primitive arrays if a
+     * primitive is to be added.
+     *
+     * @param primitive
+     *            Whether a primitive is to be added.
+     */
+    private void ensureCapacity(boolean primitive) {
+        if (size == objects.length) {
+            int capacity = Math.max(4, size * 2);
+            objects = Arrays.copyOf(objects, capacity);
+            if (types != null) {
+                types = Arrays.copyOf(types, capacity);
+                primitives = Arrays.copyOf(primitives, capacity);
+            }
+        }
+        if (primitive && types == null) {
+            types = new byte[objects.length];
+            primitives = new long[objects.length];
+        }
+    }
+
+    /**
+     * Add an object argument.
+     *
+     * @param value
+     *            The argument.
+     */
+    public void add(Object value) {
+        ensureCapacity(false);
+        if (types != null) {
+            types[size] = OBJECT;
+        }
+        objects[size++] = value;
+    }
+
+    /**
+     * Add a primitive argument of the given type stored as the given bits.
+     *
+     * @param type
+     *            The argument type.
+     * @param bits
+     *            The argument value or the raw long bits of a double.
+     */
+    private void add(byte type, long bits) {
+        ensureCapacity(true);
+        types[size] = type;
+        primitives[size++] = bits;
+    }
+
+    /**
+     * Add an integer argument.
+     *
+     * @param value
+     *            The argument.
+     */
+    public void add(int value) {
+        add(INT, value);
+    }
+
+    /**
+     * Add a long argument.
+     *
+     * @param value
+     *            The argument.
+     */
+    public void add(long value) {
+        add(LONG, value);
+    }
+
+    /**
+     * Add a double argument.
+     *
+     * @param value
+     *            The argument.
+     */
+    public void add(double value) {
+        add(DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Add the primitive argument at the given index of the given argument
+     * list without boxing it.
+     *
+     * @param arguments
+     *            The argument list.
+     * @param index
+     *            The index of a primitive argument.
+     */
+    public void addPrimitive(Arguments arguments, int index) {
+        add(arguments.types[index], arguments.primitives[index]);
+    }
+
+    /**
+     * Create an array of the arguments, boxing the primitive arguments.
+     *
+     * @return An array of the arguments.
+     */
+    public Object[] toArray() {
+        if (types == null) {
+            return Arrays.copyOf(objects, size);
+        }
+        Object[] array = new Object[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Remove all of the arguments, releasing the object arguments.
+     */
+    public void clear() {
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+    }
+}
@@ -0,0 +1,386 @@
+package com.goodworkalan.verbiage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A log of messages written as compact binary records that are rendered
+ * later by a <code>BinaryLogDecoder</code>, so that messages are not
+ * rendered by the thread that logs them.
+ * <p>
+ * A message is written as the id of its bundle path and message key followed
+ * by the format arguments selected by the paths of its message template.
+ * Integers, longs, doubles and the other primitive wrappers are written as
+ * binary values, big integers and big decimals are written as their string
+ * values, and any other argument is written as its string value, written by
+ * its argument converter if it has one. The bundle path, message key and
+ * locale of an id are written as a definition record before the first message
+ * record that uses the id, so the log can be decoded without the process that
+ * wrote it. The arguments are in the order of the paths of the template of
+ * that locale, so the decoder reads the template from the bundle of that
+ * locale. A message that cannot be formatted because its bundle, key or
+ * arguments cannot be found is rendered and written as text.
+ * <p>
+ * The records are written to a byte buffer, which can be a buffer mapped to a
+ * file. When the buffer is full, messages are not written, and the caller
+ * can render them instead.
+ * <p>
+ * The log always ends with an end record, which is written at the starting
+ * position of the buffer when the log is created, so that the old contents
+ * of a reused buffer are not decoded as records. A record is written after the end
+ * record, followed by a new end record, and only then is the type of the
+ * record written over the old end record, so that a reader that stops at the
+ * end record does not read a partially written record. The records of a
+ * buffer mapped to a file are only guaranteed to be visible to another
+ * process after <code>force</code> is called.
+ *
+ * @author Alan Gutierrez
+ */
+public class BinaryLog {
+    /** The record type that ends the log. */
+    final static byte END = 0;
+
+    /** The record type of a bundle path and message key definition. */
+    final static byte DEFINE = 1;
+
+    /** The record type of a message. */
+    final static byte MESSAGE = 2;
+
+    /** The record type of a rendered message. */
+    final static byte TEXT = 3;
+
+    /** The argument type of null. */
+    final static byte NULL = 0;
+
+    /** The argument type of a string. */
+    final static byte STRING = 1;
+
+    /** The argument type of an integer. */
+    final static byte INT = 2;
+
+    /** The argument type of a long. */
+    final static byte LONG = 3;
+
+    /** The argument type of a double. */
+    final static byte DOUBLE = 4;
+
+    /** The argument type of a float. */
+    final static byte FLOAT = 5;
+
+    /** The argument type of a short. */
+    final static byte SHORT = 6;
+
+    /** The argument type of a byte. */
+    final static byte BYTE = 7;
+
+    /** The argument type of a character. */
+    final static byte CHAR = 8;
+
+    /** The argument type of a boolean. */
+    final static byte BOOLEAN = 9;
+
+    /** The argument type of a big integer. */
+    final static byte BIG_INTEGER = 10;
+
+    /** The argument type of a big decimal. */
+    final static byte BIG_DECIMAL = 11;
+
+    /** The buffer to which records are written. */
+    private final ByteBuffer buffer;
+
+    /** The position of the buffer at which the log starts. */
+    private final int start;
+
+    /** The limit of the buffer at which the log ends. */
+    private final int limit;
+
+    /**
+     * The map of the bundle path, message key and locale of each definition to
+     * its id, keyed by value so that the definitions do not hold the compiled
+     * templates, which are replaced when the bundle cache is cleared.
+     */
+    private final Map<Definition, Integer> ids = new HashMap<Definition, Integer>();
+
+    /**
+     * Create a binary log that writes records to the given buffer starting at
+     * the position of the buffer, writing an end record at that position.
+     *
+     * @param buffer
+     *            The buffer.
+     */
+    public BinaryLog(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.start = buffer.position();
+        this.limit = buffer.limit();
+        if (start != limit) {
+            buffer.put(start, END);
+        }
+    }
+
+    /**
+     * Create a binary log that writes records to the given file, mapping the
+     * given number of bytes of the file into memory.
+     *
+     * @param file
+     *            The file.
+     * @param size
+     *            The size of the log in bytes.
+     * @return A binary log.
+     * @exception IOException
+     *                If an I/O error occurs.
+     */
+    public static BinaryLog map(File file, int size) throws IOException {
+        RandomAccessFile random = new RandomAccessFile(file, "rw");
+        try {
+            return new BinaryLog(random.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } finally {
+            random.close();
+        }
+    }
+
+    /**
+     * Write the given message to the log. The arguments of the message are
+     * selected before the log is locked, so that only the copy of the record
+     * into the buffer is serialized.
+     *
+     * @param message
+     *            The message.
+     * @return True if the message was written, false if the log is full.
+     */
+    public boolean write(Message message) {
+        Scratch scratch = Scratch.acquire();
+        try {
+            Arguments arguments = scratch.getArguments();
+            CompiledTemplate template = message.getTemplate();
+            if (template == null || !message.select(template, arguments)) {
+                return write(null, message.toString(), null);
+            }
+            Bundle bundle = message.getResolvedBundle();
+            return write(new Definition(bundle.getBundlePath(), message.getMessageKey(), bundle.getLocale()), null, arguments);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    /**
+     * Write a message record with the given definition and selected
+     * arguments, or a text record with the given text if the definition is
+     * null.
+     *
+     * @param definition
+     *            The bundle path, message key and locale of the message or
+     *            null to write a text record.
+     * @param text
+     *            The rendered message.
+     * @param arguments
+     *            The selected arguments.
+     * @return True if the record was written, false if the log is full.
+     */
+    private synchronized boolean write(Definition definition, String text, Arguments arguments) {
+        int start = buffer.position();
+        if (start == buffer.limit()) {
+            return false;
+        }
+        boolean defined = false;
+        try {
+            byte type;
+            buffer.position(start + 1);
+            if (definition == null) {
+                type = TEXT;
+                putString(text);
+            } else {
+                Integer id = ids.get(definition);
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(definition, id);
+                    defined = true;
+                    type = DEFINE;
+                    buffer.putInt(id);
+                    putString(definition.bundlePath);
+                    putString(definition.key);
+                    putString(definition.locale.toLanguageTag());
+                    buffer.put(MESSAGE);
+                } else {
+                    type = MESSAGE;
+                }
+                buffer.putInt(id).putInt(arguments.size());
+                for (int i = 0, stop = arguments.size(); i < stop; i++) {
+                    putArgument(arguments, i);
+                }
+            }
+            if (buffer.hasRemaining()) {
+                buffer.put(buffer.position(), END);
+            }
+            buffer.put(start, type);
+            return true;
+        } catch (BufferOverflowException e) {
+            if (defined) {
+                ids.remove(definition);
+            }
+            buffer.position(start);
+            if (buffer.hasRemaining()) {
+                buffer.put(start, END);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Write the given string as its length followed by its characters.
+     *
+     * @param string
+     *            The string.
+     * @exception BufferOverflowException
+     *                If the buffer is full.
+     */
+    private void putString(String string) {
+        int length = string.length();
+        buffer.putInt(length);
+        for (int i = 0; i < length; i++) {
+            buffer.putChar(string.charAt(i));
+        }
+    }
+
+    /**
+     * Write the argument at the given index of the given argument list as its
+     * argument type followed by its value.
+     *
+     * @param arguments
+     *            The argument list.
+     * @param index
+     *            The argument index.
+     * @exception BufferOverflowException
+     *                If the buffer is full.
+     */
+    private void putArgument(Arguments arguments, int index) {
+        switch (arguments.getType(index)) {
+        case Arguments.INT:
+            buffer.put(INT).putInt((int) arguments.getLong(index));
+            return;
+        case Arguments.LONG:
+            buffer.put(LONG).putLong(arguments.getLong(index));
+            return;
+        case Arguments.DOUBLE:
+            buffer.put(DOUBLE).putDouble(arguments.getDouble(index));
+            return;
+        }
+        Object value = arguments.get(index);
+        if (value == null) {
+            buffer.put(NULL);
+        } else if (value instanceof Integer) {
+            buffer.put(INT).putInt((Integer) value);
+        } else if (value instanceof Long) {
+            buffer.put(LONG).putLong((Long) value);
+        } else if (value instanceof Double) {
+            buffer.put(DOUBLE).putDouble((Double) value);
+        } else if (value instanceof Float) {
+            buffer.put(FLOAT).putFloat((Float) value);
+        } else if (value instanceof Short) {
+            buffer.put(SHORT).putShort((Short) value);
+        } else if (value instanceof Byte) {
+            buffer.put(BYTE).put((Byte) value);
+        } else if (value instanceof Character) {
+            buffer.put(CHAR).putChar((Character) value);
+        } else if (value instanceof Boolean) {
+            buffer.put(BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+        } else if (value instanceof BigInteger) {
+            buffer.put(BIG_INTEGER);
+            putString(value.toString());
+        } else if (value instanceof BigDecimal) {
+            buffer.put(BIG_DECIMAL);
+            putString(value.toString());
+        } else {
+            buffer.put(STRING);
+            putString(Converters.toString(value));
+        }
+    }
+
+    /**
+     * Discard the records written to the log, so that the log can be reused
+     * once its records have been decoded. The definitions are discarded with
+     * the records, so they are written again when next used.
+     */
+    public synchronized void clear() {
+        buffer.limit(limit);
+        buffer.position(start);
+        if (start != limit) {
+            buffer.put(start, END);
+        }
+        ids.clear();
+    }
+
+    /**
+     * Write the records in the buffer to the file if the buffer is mapped to
+     * a file.
+     */
+    public synchronized void force() {
+        if (buffer instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) buffer).force();
+        }
+    }
+
+    /**
+     * The bundle path, message key and locale of a definition record.
+     */
+    private static final class Definition {
+        /** The bundle path. */
+        private final String bundlePath;
+
+        /** The message key. */
+        private final String key;
+
+        /** The locale of the bundle. */
+        private final Locale locale;
+
+        /**
+         * Create a definition.
+         *
+         * @param bundlePath
+         *            The bundle path.
+         * @param key
+         *            The message key.
+         * @param locale
+         *            The locale of the bundle.
+         */
+        public Definition(String bundlePath, String key, Locale locale) {
+            this.bundlePath = bundlePath;
+            this.key = key;
+            this.locale = locale;
+        }
+
+        /**
+         * Two definitions are equal if their bundle paths, message keys and
+         * locales are equal.
+         *
+         * @param object
+         *            The object to compare.
+         * @return True if the object is an equal definition.
+         */
+        public boolean equals(Object object) {
+            if (object instanceof Definition) {
+                Definition other = (Definition) object;
+                return bundlePath.equals(other.bundlePath) && key.equals(other.key) && locale.equals(other.locale);
+            }
+            return false;
+        }
+
+        /**
+         * Combine the hash codes of the bundle path, message key and locale.
+         *
+         * @return The hash code.
+         */
+        public int hashCode() {
+            return (bundlePath.hashCode() * 37 + key.hashCode()) * 37 + locale.hashCode();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.goodworkalan.verbiage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders the records of a binary log as text, one line for each message,
+ * using the same compiled message templates used to render messages. The
+ * decoder can be run in the process that writes the log or as a command line
+ * program that decodes a log file.
+ * <p>
+ * <code>java com.goodworkalan.verbiage.BinaryLogDecoder messages.log [locale]</code>
+ * <p>
+ * Each message is read from the bundle of the locale in which it was written,
+ * since the order of its arguments is the order of the paths of the template
+ * of that locale, and is formatted in the locale of the decoder. The message
+ * bundles must be on the class path of the decoder.
+ *
+ * @author Alan Gutierrez
+ */
+public class BinaryLogDecoder {
+    /** The class loader used to load the message bundles. */
+    private final ClassLoader classLoader;
+
+    /** The locale used to format messages. */
+    private final Locale locale;
+
+    /** The number formatting symbols of the locale. */
+    private final Symbols symbols;
+
+    /**
+     * The bundle paths, message keys and language tags of the ids defined in
+     * the log, the bundle path at three times the id followed by the message
+     * key and the language tag.
+     */
+    private final List<String> definitions = new ArrayList<String>();
+
+    /**
+     * Create a decoder that loads message bundles with the given class loader
+     * and formats messages in the given locale.
+     *
+     * @param classLoader
+     *            The class loader.
+     * @param locale
+     *            The locale.
+     */
+    public BinaryLogDecoder(ClassLoader classLoader, Locale locale) {
+        this.classLoader = classLoader;
+        this.locale = locale;
+        this.symbols = Symbols.getInstance(locale);
+    }
+
+    /**
+     * Decode the records from the position of the given buffer to the end of
+     * the log or the end of the buffer, writing each message to the given
+     * appendable followed by a line separator.
+     *
+     * @param buffer
+     *            The buffer.
+     * @param out
+     *            The appendable.
+     * @exception IOException
+     *                If an I/O error occurs.
+     * @exception IllegalStateException
+     *                If a message record uses an id that is not defined.
+     */
+    public void decode(ByteBuffer buffer, Appendable out) throws IOException {
+        String separator = System.getProperty("line.separator");
+        StringBuilder builder = new StringBuilder();
+        Arguments arguments = new Arguments(16);
+        while (buffer.hasRemaining()) {
+            byte type = buffer.get();
+            if (type == BinaryLog.END) {
+                break;
+            }
+            if (type == BinaryLog.DEFINE) {
+                int id = buffer.getInt();
+                while (definitions.size() < id * 3 + 3) {
+                    definitions.add(null);
+                }
+                definitions.set(id * 3, getString(buffer));
+                definitions.set(id * 3 + 1, getString(buffer));
+                definitions.set(id * 3 + 2, getString(buffer));
+                continue;
+            }
+            builder.setLength(0);
+            if (type == BinaryLog.TEXT) {
+                builder.append(getString(buffer));
+            } else {
+                int id = buffer.getInt();
+                if (id * 3 >= definitions.size() || definitions.get(id * 3) == null) {
+                    throw new IllegalStateException();
+                }
+                arguments.clear();
+                for (int i = 0, stop = buffer.getInt(); i < stop; i++) {
+                    getArgument(buffer, arguments);
+                }
+                format(builder, definitions.get(id * 3), definitions.get(id * 3 + 1), Locale.forLanguageTag(definitions.get(id * 3 + 2)), arguments);
+            }
+            out.append(builder).append(separator);
+        }
+    }
+
+    /**
+     * Write the message with the given bundle path and message key read from
+     * the bundle of the given locale and formatted with the given arguments
+     * in the locale of this decoder to the given string builder, or the meta
+     * error message if the bundle or message cannot be found.
+     *
+     * @param builder
+     *            The string builder.
+     * @param bundlePath
+     *            The bundle path.
+     * @param key
+     *            The message key.
+     * @param bundleLocale
+     *            The locale of the bundle in which the message was written.
+     * @param arguments
+     *            The format arguments.
+     */
+    private void format(StringBuilder builder, String bundlePath, String key, Locale bundleLocale, Arguments arguments) {
+        Bundle bundle = BundleCache.getBundle(classLoader, bundlePath, bundleLocale);
+        if (bundle == null) {
+            Message.message(builder, "missingBundle", bundlePath, key);
+            return;
+        }
+        CompiledTemplate template = bundle.getTemplate(key);
+        if (template == null) {
+            Message.message(builder, "missingKey", key, bundlePath);
+        } else if (template.isBlank()) {
+            Message.message(builder, "blankMessage", key, bundlePath);
+        } else {
+            Message.format(builder, template, arguments, key, bundlePath, locale, symbols);
+        }
+    }
+
+    /**
+     * Read a string written as its length followed by its characters.
+     *
+     * @param buffer
+     *            The buffer.
+     * @return The string.
+     */
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        char[] characters = new char[length];
+        for (int i = 0; i < length; i++) {
+            characters[i] = buffer.getChar();
+        }
+        return new String(characters);
+    }
+
+    /**
+     * Read an argument written as its argument type followed by its value and
+     * add it to the given argument list, adding integers, longs and doubles
+     * without boxing them.
+     *
+     * @param buffer
+     *            The buffer.
+     * @param arguments
+     *            The argument list.
+     * @exception IllegalStateException
+     *                If the argument type is not known.
+     */
+    private static void getArgument(ByteBuffer buffer, Arguments arguments) {
+        switch (buffer.get()) {
+        case BinaryLog.NULL:
+            arguments.add((Object) null);
+            break;
+        case BinaryLog.STRING:
+            arguments.add((Object) getString(buffer));
+            break;
+        case BinaryLog.INT:
+            arguments.add(buffer.getInt());
+            break;
+        case BinaryLog.LONG:
+            arguments.add(buffer.getLong());
+            break;
+        case BinaryLog.DOUBLE:
+            arguments.add(buffer.getDouble());
+            break;
+        case BinaryLog.FLOAT:
+            arguments.add((Object) buffer.getFloat());
+            break;
+        case BinaryLog.SHORT:
+            arguments.add((Object) buffer.getShort());
+            break;
+        case BinaryLog.BYTE:
+            arguments.add((Object) buffer.get());
+            break;
+        case BinaryLog.CHAR:
+            arguments.add((Object) buffer.getChar());
+            break;
+        case BinaryLog.BOOLEAN:
+            arguments.add((Object) (buffer.get() != 0));
+            break;
+        case BinaryLog.BIG_INTEGER:
+            arguments.add(new BigInteger(getString(buffer)));
+            break;
+        case BinaryLog.BIG_DECIMAL:
+            arguments.add(new BigDecimal(getString(buffer)));
+            break;
+        default:
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * Decode the binary log file named by the first argument to standard
+     * output, in the locale named by the optional second argument as a
+     * language tag, or else in the default locale.
+     *
+     * @param args
+     *            The log file name and an optional language tag.
+     * @exception IOException
+     *                If an I/O error occurs.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: java " + BinaryLogDecoder.class.getName() + " <file> [locale]");
+            System.exit(1);
+        }
+        Locale locale = args.length > 1 ? Locale.forLanguageTag(args[1]) : Locale.getDefault();
+        RandomAccessFile random = new RandomAccessFile(new File(args[0]), "r");
+        try {
+            FileChannel channel = random.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            new BinaryLogDecoder(Thread.currentThread().getContextClassLoader(), locale).decode(buffer, System.out);
+        } finally {
+            random.close();
+        }
+        System.out.flush();
+    }
+}
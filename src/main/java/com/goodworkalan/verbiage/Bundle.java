@@ -0,0 +1,149 @@
+package com.goodworkalan.verbiage;
+
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A resource bundle and the message templates compiled from its message
+ * formats. Bundles are cached by class loader, bundle path and locale, so a
+ * message template is compiled once for each key in each locale. Messages
+ * from a bundle are formatted in the locale of the bundle, whose number
+ * formatting symbols are resolved once when the bundle is loaded.
+ * <p>
+ * A resource bundle can be an instance of a class loaded by the class loader
+ * of the bundle, so the resource bundle and the class loader are held weakly,
+ * and the resource bundle is loaded again if it is collected before every
+ * message format has been compiled. The compiled templates reference no
+ * classes of the class loader, so a cached bundle does not keep its class
+ * loader from being unloaded.
+ *
+ * @author Alan Gutierrez
+ */
+final class Bundle {
+    /** The bundle path. */
+    private final String bundlePath;
+
+    /** The class loader that loaded the resource bundle. */
+    private final WeakReference<ClassLoader> classLoader;
+
+    /** The resource bundle. */
+    private volatile WeakReference<ResourceBundle> resourceBundle;
+
+    /** The locale used to load the bundle and format its messages. */
+    private final Locale locale;
+
+    /** The number formatting symbols of the locale. */
+    private final Symbols symbols;
+
+    /** The template cached for a message key that is not in the bundle. */
+    private final static CompiledTemplate MISSING = new CompiledTemplate("");
+
+    /** The map of message keys to compiled message templates. */
+    private final ConcurrentMap<String, CompiledTemplate> templates = new ConcurrentHashMap<String, CompiledTemplate>();
+
+    /**
+     * Create a bundle that compiles the message formats of the given resource
+     * bundle.
+     *
+     * @param bundlePath
+     *            The bundle path.
+     * @param resourceBundle
+     *            The resource bundle.
+     * @param classLoader
+     *            The class loader that loaded the resource bundle.
+     * @param locale
+     *            The locale used to load the bundle and format its messages.
+     */
+    public Bundle(String bundlePath, ResourceBundle resourceBundle, ClassLoader classLoader, Locale locale) {
+        this.bundlePath = bundlePath;
+        this.classLoader = new WeakReference<ClassLoader>(classLoader);
+        this.resourceBundle = new WeakReference<ResourceBundle>(resourceBundle);
+        this.locale = locale;
+        this.symbols = locale == null ? null : Symbols.getInstance(locale);
+    }
+
+    /**
+     * Get the bundle path.
+     *
+     * @return The bundle path.
+     */
+    public String getBundlePath() {
+        return bundlePath;
+    }
+
+    /**
+     * Get the locale used to load the bundle and format its messages.
+     *
+     * @return The locale.
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Get the number formatting symbols of the locale.
+     *
+     * @return The number formatting symbols.
+     */
+    public Symbols getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Get the resource bundle, loading it again if it has been collected.
+     *
+     * @return The resource bundle or null if the class loader has been
+     *         collected or the resource bundle can no longer be loaded.
+     */
+    public ResourceBundle getResourceBundle() {
+        ResourceBundle resourceBundle = this.resourceBundle.get();
+        if (resourceBundle == null) {
+            ClassLoader classLoader = this.classLoader.get();
+            if (classLoader == null) {
+                return null;
+            }
+            try {
+                resourceBundle = ResourceBundle.getBundle(bundlePath, locale, classLoader);
+            } catch (MissingResourceException e) {
+                return null;
+            }
+            this.resourceBundle = new WeakReference<ResourceBundle>(resourceBundle);
+        }
+        return resourceBundle;
+    }
+
+    /**
+     * Get the compiled message template for the given message key, compiling
+     * the message format and caching the template if it has not already been
+     * compiled. A message key that is not in the bundle is cached as missing,
+     * so it is not looked up again.
+     *
+     * @param key
+     *            The message key.
+     * @return The compiled message template or null if the message key
+     *         cannot be found in the bundle.
+     */
+    public CompiledTemplate getTemplate(String key) {
+        CompiledTemplate template = templates.get(key);
+        if (template == null) {
+            ResourceBundle resourceBundle = getResourceBundle();
+            if (resourceBundle == null) {
+                return null;
+            }
+            if (resourceBundle.containsKey(key)) {
+                template = new CompiledTemplate(resourceBundle.getString(key));
+            } else {
+                template = MISSING;
+            }
+            CompiledTemplate existing = templates.putIfAbsent(key, template);
+            if (existing != null) {
+                template = existing;
+            }
+        }
+        return template == MISSING ? null : template;
+    }
+}
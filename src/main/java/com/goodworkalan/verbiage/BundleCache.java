@@ -0,0 +1,279 @@
+package com.goodworkalan.verbiage;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A cache of resource bundles keyed by class loader, bundle path and locale.
+ * Each resource bundle is cached with the message templates compiled from it.
+ * A resource bundle that cannot be loaded is recorded as missing, so that it
+ * is not probed for again until the cache is cleared.
+ * <p>
+ * The class loaders are held weakly, so that when an application within a
+ * container is unloaded, the bundles loaded by its class loader are released
+ * with the class loader. The cached bundles hold their resource bundles and
+ * class loaders weakly, so that a bundle does not keep the class loader that
+ * is its key from being collected. Reads do not lock, they are a pair of concurrent
+ * hash map lookups. Entries for collected class loaders are purged when new
+ * bundles are added to the cache.
+ *
+ * @author Alan Gutierrez
+ */
+final class BundleCache {
+    /** The queue of class loader references that have been collected. */
+    private static final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<ClassLoader>();
+
+    /** The map of weak class loader references to the bundles they loaded. */
+    private static final ConcurrentMap<Object, ConcurrentMap<BundleKey, Bundle>> loaders = new ConcurrentHashMap<Object, ConcurrentMap<BundleKey, Bundle>>();
+
+    /** The bundle cached for a resource bundle that cannot be loaded. */
+    private static final Bundle MISSING = new Bundle(null, null, null, null);
+
+    /** Cannot be instantiated. */
+    private BundleCache() {
+    }
+
+    /**
+     * Get the bundle at the given bundle path for the given locale loaded by
+     * the given class loader, loading it and caching it if it is not already
+     * cached. If the class loader is null, the system class loader is
+     * used.
+     *
+     * @param classLoader
+     *            The class loader.
+     * @param bundlePath
+     *            The bundle path.
+     * @param locale
+     *            The locale.
+     * @return The bundle or null if the resource bundle cannot be loaded.
+     */
+    public static Bundle getBundle(ClassLoader classLoader, String bundlePath, Locale locale) {
+        if (classLoader == null) {
+            classLoader = ClassLoader.getSystemClassLoader();
+        }
+        BundleKey key = new BundleKey(bundlePath, locale);
+        ConcurrentMap<BundleKey, Bundle> bundles = loaders.get(new LoaderKey(classLoader));
+        if (bundles != null) {
+            Bundle bundle = bundles.get(key);
+            if (bundle != null) {
+                return bundle == MISSING ? null : bundle;
+            }
+        }
+        Bundle bundle;
+        try {
+            bundle = new Bundle(bundlePath, ResourceBundle.getBundle(bundlePath, locale, classLoader), classLoader, locale);
+        } catch (MissingResourceException e) {
+            bundle = MISSING;
+        }
+        if (bundles == null) {
+            expunge();
+            bundles = new ConcurrentHashMap<BundleKey, Bundle>();
+            ConcurrentMap<BundleKey, Bundle> existing = loaders.putIfAbsent(new LoaderReference(classLoader, queue), bundles);
+            if (existing != null) {
+                bundles = existing;
+            }
+        }
+        Bundle existing = bundles.putIfAbsent(key, bundle);
+        if (existing != null) {
+            bundle = existing;
+        }
+        return bundle == MISSING ? null : bundle;
+    }
+
+    /**
+     * Remove all of the bundles loaded by the given class loader from the
+     * cache, including the record of bundles that could not be loaded, and
+     * clear the resource bundle cache of the class loader so that the
+     * bundles are loaded again.
+     *
+     * @param classLoader
+     *            The class loader.
+     */
+    public static void clear(ClassLoader classLoader) {
+        if (classLoader == null) {
+            classLoader = ClassLoader.getSystemClassLoader();
+        }
+        loaders.remove(new LoaderKey(classLoader));
+        ResourceBundle.clearCache(classLoader);
+    }
+
+    /**
+     * Remove all of the bundles from the cache, including the record of
+     * bundles that could not be loaded.
+     */
+    public static void clear() {
+        for (Object key : loaders.keySet()) {
+            ClassLoader classLoader = ((LoaderReference) key).get();
+            if (classLoader != null) {
+                ResourceBundle.clearCache(classLoader);
+            }
+        }
+        loaders.clear();
+    }
+
+    /** Remove the bundles of class loaders that have been collected. */
+    private static void expunge() {
+        Reference<? extends ClassLoader> reference;
+        while ((reference = queue.poll()) != null) {
+            loaders.remove(reference);
+        }
+    }
+
+    /**
+     * A weak reference to a class loader that is equal to any other class
+     * loader key that references the same class loader.
+     */
+    private static final class LoaderReference extends WeakReference<ClassLoader> {
+        /** The identity hash code of the class loader. */
+        private final int hashCode;
+
+        /**
+         * Create a weak class loader key.
+         *
+         * @param classLoader
+         *            The class loader.
+         * @param queue
+         *            The queue to notify when the class loader is collected.
+         */
+        public LoaderReference(ClassLoader classLoader, ReferenceQueue<ClassLoader> queue) {
+            super(classLoader, queue);
+            this.hashCode = System.identityHashCode(classLoader);
+        }
+
+        /**
+         * This key is equal to another weak key or a lookup key that
+         * references the same class loader. A collected key is only equal to
+         * itself.
+         *
+         * @param object
+         *            The object to compare.
+         * @return True if the object references the same class loader.
+         */
+        public boolean equals(Object object) {
+            if (object == this) {
+                return true;
+            }
+            ClassLoader classLoader = get();
+            if (classLoader == null) {
+                return false;
+            }
+            if (object instanceof LoaderReference) {
+                return ((LoaderReference) object).get() == classLoader;
+            }
+            if (object instanceof LoaderKey) {
+                return ((LoaderKey) object).classLoader == classLoader;
+            }
+            return false;
+        }
+
+        /**
+         * Return the identity hash code of the class loader.
+         *
+         * @return The hash code.
+         */
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * A strong key used to look up a class loader in the map of weak class
+     * loader keys without creating a weak reference.
+     */
+    private static final class LoaderKey {
+        /** The class loader. */
+        private final ClassLoader classLoader;
+
+        /**
+         * Create a lookup key.
+         *
+         * @param classLoader
+         *            The class loader.
+         */
+        public LoaderKey(ClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
+
+        /**
+         * This key is equal to a weak key that references the same class
+         * loader.
+         *
+         * @param object
+         *            The object to compare.
+         * @return True if the object references the same class loader.
+         */
+        public boolean equals(Object object) {
+            if (object instanceof LoaderReference) {
+                return ((LoaderReference) object).get() == classLoader;
+            }
+            if (object instanceof LoaderKey) {
+                return ((LoaderKey) object).classLoader == classLoader;
+            }
+            return false;
+        }
+
+        /**
+         * Return the identity hash code of the class loader.
+         *
+         * @return The hash code.
+         */
+        public int hashCode() {
+            return System.identityHashCode(classLoader);
+        }
+    }
+
+    /**
+     * The bundle path and locale key of a bundle loaded by a class loader.
+     */
+    private static final class BundleKey {
+        /** The bundle path. */
+        private final String bundlePath;
+
+        /** The locale. */
+        private final Locale locale;
+
+        /**
+         * Create a bundle key.
+         *
+         * @param bundlePath
+         *            The bundle path.
+         * @param locale
+         *            The locale.
+         */
+        public BundleKey(String bundlePath, Locale locale) {
+            this.bundlePath = bundlePath;
+            this.locale = locale;
+        }
+
+        /**
+         * Two bundle keys are equal if their bundle paths and locales are
+         * equal.
+         *
+         * @param object
+         *            The object to compare.
+         * @return True if the object is an equal bundle key.
+         */
+        public boolean equals(Object object) {
+            if (object instanceof BundleKey) {
+                BundleKey other = (BundleKey) object;
+                return bundlePath.equals(other.bundlePath) && locale.equals(other.locale);
+            }
+            return false;
+        }
+
+        /**
+         * Combine the hash codes of the bundle path and the locale.
+         *
+         * @return The hash code.
+         */
+        public int hashCode() {
+            return bundlePath.hashCode() * 37 + locale.hashCode();
+        }
+    }
+}
@@ -0,0 +1,778 @@
+package com.goodworkalan.verbiage;
+
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+
+/**
+ * A sprintf format parsed once into a list of literal text and conversion
+ * segments, so that formatting does not parse the format.
+ * <p>
+ * The conversions <code>%s</code>, <code>%d</code>, <code>%x</code> and
+ * <code>%f</code> are written by hand when they use no flags other than
+ * left justification, an optional width and, for <code>%s</code> and
+ * <code>%f</code>, an optional precision. The output is the same as the output
+ * of <code>String.format</code>. An argument of a type that the hand written
+ * conversion does not handle is formatted by a <code>Formatter</code> for that
+ * conversion alone. An argument of a type with a registered argument converter
+ * is written by the converter for <code>%s</code> and replaced by its
+ * converted value for any other conversion. A format that uses any other conversion, flag, or an
+ * explicit argument index is formatted by a <code>Formatter</code>.
+ *
+ * @author Alan Gutierrez
+ */
+final class CompiledFormat {
+    /** Spaces used to pad conversions to their width. */
+    private final static String SPACES = "                ";
+
+    /** The format. */
+    private final String format;
+
+    /**
+     * The segments of the format or null if the format is formatted by a
+     * <code>Formatter</code>.
+     */
+    private final Segment[] segments;
+
+    /**
+     * Compile the given sprintf format.
+     *
+     * @param format
+     *            The format.
+     */
+    public CompiledFormat(String format) {
+        this.format = format;
+        this.segments = parse(format);
+    }
+
+    /**
+     * Parse the given format into segments, returning null if the format uses
+     * a conversion that is not written by hand.
+     *
+     * @param format
+     *            The format.
+     * @return The segments or null.
+     */
+    private static Segment[] parse(String format) {
+        List<Segment> segments = new ArrayList<Segment>();
+        StringBuilder literal = new StringBuilder();
+        int index = 0, i = 0, stop = format.length();
+        while (i < stop) {
+            char ch = format.charAt(i++);
+            if (ch != '%') {
+                literal.append(ch);
+                continue;
+            }
+            int start = i;
+            while (i < stop && Character.isDigit(format.charAt(i))) {
+                i++;
+            }
+            if (i < stop && format.charAt(i) == '$') {
+                return null;
+            }
+            i = start;
+            boolean left = false;
+            while (i < stop && "-#+ 0,(<".indexOf(format.charAt(i)) != -1) {
+                if (format.charAt(i) != '-' || left) {
+                    return null;
+                }
+                left = true;
+                i++;
+            }
+            int width = -1;
+            start = i;
+            while (i < stop && isDigit(format.charAt(i))) {
+                i++;
+            }
+            if (i != start) {
+                if (i - start > 6) {
+                    return null;
+                }
+                width = Integer.parseInt(format.substring(start, i));
+            }
+            int precision = -1;
+            if (i < stop && format.charAt(i) == '.') {
+                start = ++i;
+                while (i < stop && isDigit(format.charAt(i))) {
+                    i++;
+                }
+                if (i == start || i - start > 6) {
+                    return null;
+                }
+                precision = Integer.parseInt(format.substring(start, i));
+            }
+            if (i == stop || (left && width == -1)) {
+                return null;
+            }
+            char conversion = format.charAt(i++);
+            if (conversion == '%' || conversion == 'n') {
+                if (left || width != -1 || precision != -1) {
+                    return null;
+                }
+                literal.append(conversion == '%' ? "%" : System.getProperty("line.separator"));
+                continue;
+            }
+            Conversion segment;
+            switch (conversion) {
+            case 's':
+                segment = new StringConversion(index, left, width, precision);
+                break;
+            case 'd':
+                segment = precision == -1 ? new DecimalConversion(index, left, width) : null;
+                break;
+            case 'x':
+                segment = precision == -1 ? new HexConversion(index, left, width) : null;
+                break;
+            case 'f':
+                segment = new FloatConversion(index, left, width, precision);
+                break;
+            default:
+                segment = null;
+            }
+            if (segment == null) {
+                return null;
+            }
+            if (literal.length() != 0) {
+                segments.add(new Literal(literal.toString()));
+                literal.setLength(0);
+            }
+            segments.add(segment);
+            index++;
+        }
+        if (literal.length() != 0) {
+            segments.add(new Literal(literal.toString()));
+        }
+        return segments.toArray(new Segment[segments.size()]);
+    }
+
+    /**
+     * Whether the given character is an ASCII digit, which is all that the
+     * hand written conversions accept in a width or precision.
+     *
+     * @param ch
+     *            The character.
+     * @return True if the character is an ASCII digit.
+     */
+    private static boolean isDigit(char ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    /**
+     * Whether the format is written by hand written conversions.
+     *
+     * @return True if the format does not use a <code>Formatter</code>.
+     */
+    public boolean isCompiled() {
+        return segments != null;
+    }
+
+    /**
+     * Write the given arguments formatted according to this format to the
+     * given string builder. If an exception is thrown, partial output may have
+     * been written to the string builder.
+     *
+     * @param builder
+     *            The string builder.
+     * @param locale
+     *            The locale.
+     * @param arguments
+     *            The format arguments.
+     * @exception java.util.IllegalFormatException
+     *                If the arguments do not match the format.
+     */
+    public void format(StringBuilder builder, Locale locale, Object[] arguments) {
+        format(builder, locale, new Arguments(arguments));
+    }
+
+    /**
+     * Write the given argument list formatted according to this format to the
+     * given string builder. Integer, long and double arguments are written
+     * without boxing by the hand written conversions. If an exception is
+     * thrown, partial output may have been written to the string builder.
+     *
+     * @param builder
+     *            The string builder.
+     * @param locale
+     *            The locale.
+     * @param arguments
+     *            The format arguments.
+     * @exception java.util.IllegalFormatException
+     *                If the arguments do not match the format.
+     */
+    public void format(StringBuilder builder, Locale locale, Arguments arguments) {
+        format(builder, locale, Symbols.getInstance(locale), arguments);
+    }
+
+    /**
+     * Write the given argument list formatted according to this format to the
+     * given string builder using the given number formatting symbols of the
+     * given locale, which are resolved once for each bundle rather than for
+     * each message.
+     *
+     * @param builder
+     *            The string builder.
+     * @param locale
+     *            The locale.
+     * @param symbols
+     *            The number formatting symbols of the locale.
+     * @param arguments
+     *            The format arguments.
+     * @exception java.util.IllegalFormatException
+     *                If the arguments do not match the format.
+     */
+    public void format(StringBuilder builder, Locale locale, Symbols symbols, Arguments arguments) {
+        if (segments == null) {
+            Object[] array = arguments.toArray();
+            for (int i = 0; i < array.length; i++) {
+                array[i] = Converters.convert(array[i]);
+            }
+            new Formatter(builder, locale).format(format, array);
+        } else {
+            for (int i = 0; i < segments.length; i++) {
+                segments[i].format(builder, locale, symbols, arguments);
+            }
+        }
+    }
+
+    /**
+     * Return the format.
+     *
+     * @return The format.
+     */
+    public String toString() {
+        return format;
+    }
+
+    /**
+     * A segment of a compiled format.
+     */
+    abstract static class Segment {
+        /**
+         * Write the segment to the given string builder.
+         *
+         * @param builder
+         *            The string builder.
+         * @param locale
+         *            The locale.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param arguments
+         *            The format arguments.
+         */
+        public abstract void format(StringBuilder builder, Locale locale, Symbols symbols, Arguments arguments);
+    }
+
+    /**
+     * Literal text, which includes the <code>%%</code> and <code>%n</code>
+     * conversions.
+     */
+    final static class Literal extends Segment {
+        /** The text. */
+        private final String text;
+
+        /**
+         * Create a literal segment.
+         *
+         * @param text
+         *            The text.
+         */
+        public Literal(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Write the text to the given string builder.
+         *
+         * @param builder
+         *            The string builder.
+         * @param locale
+         *            The locale.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param arguments
+         *            The format arguments.
+         */
+        public void format(StringBuilder builder, Locale locale, Symbols symbols, Arguments arguments) {
+            builder.append(text);
+        }
+    }
+
+    /**
+     * A conversion of a format argument.
+     */
+    abstract static class Conversion extends Segment {
+        /** The index of the argument. */
+        private final int index;
+
+        /** Whether the conversion is left justified. */
+        protected final boolean left;
+
+        /** The width or -1 if there is no width. */
+        protected final int width;
+
+        /** The precision or -1 if there is no precision. */
+        protected final int precision;
+
+        /** The conversion specifier as <code>Formatter</code> prints it. */
+        private final String specifier;
+
+        /**
+         * Create a conversion.
+         *
+         * @param index
+         *            The index of the argument.
+         * @param left
+         *            Whether the conversion is left justified.
+         * @param width
+         *            The width or -1 if there is no width.
+         * @param precision
+         *            The precision or -1 if there is no precision.
+         * @param conversion
+         *            The conversion character.
+         */
+        protected Conversion(int index, boolean left, int width, int precision, char conversion) {
+            StringBuilder specifier = new StringBuilder("%");
+            if (left) {
+                specifier.append('-');
+            }
+            if (width != -1) {
+                specifier.append(width);
+            }
+            if (precision != -1) {
+                specifier.append('.').append(precision);
+            }
+            specifier.append(conversion);
+            this.index = index;
+            this.left = left;
+            this.width = width;
+            this.precision = precision;
+            this.specifier = specifier.toString();
+        }
+
+        /**
+         * Write the argument of this conversion to the given string builder.
+         *
+         * @param builder
+         *            The string builder.
+         * @param locale
+         *            The locale.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param arguments
+         *            The format arguments.
+         * @exception MissingFormatArgumentException
+         *                If there is no argument for this conversion.
+         */
+        public void format(StringBuilder builder, Locale locale, Symbols symbols, Arguments arguments) {
+            if (index >= arguments.size()) {
+                throw new MissingFormatArgumentException(specifier);
+            }
+            int start = builder.length();
+            if (!convert(builder, symbols, arguments, index)) {
+                new Formatter(builder, locale).format(specifier, Converters.convert(arguments.get(index)));
+            } else if (width != -1) {
+                justify(builder, start);
+            }
+        }
+
+        /**
+         * Write the given argument to the given string builder without
+         * justification, returning false without writing if the argument is
+         * of a type that this conversion does not write by hand.
+         *
+         * @param builder
+         *            The string builder.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param argument
+         *            The argument.
+         * @return True if the argument was written.
+         */
+        protected abstract boolean convert(StringBuilder builder, Symbols symbols, Object argument);
+
+        /**
+         * Write the argument at the given index of the given argument list to
+         * the given string builder without justification, returning false
+         * without writing if the argument is of a type that this conversion
+         * does not write by hand. This implementation boxes primitive
+         * arguments, conversions that write primitives override it.
+         *
+         * @param builder
+         *            The string builder.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param arguments
+         *            The format arguments.
+         * @param index
+         *            The argument index.
+         * @return True if the argument was written.
+         */
+        protected boolean convert(StringBuilder builder, Symbols symbols, Arguments arguments, int index) {
+            return convert(builder, symbols, arguments.get(index));
+        }
+
+        /**
+         * Pad the conversion written from the given start index to the end of
+         * the string builder with spaces to the width of the conversion.
+         *
+         * @param builder
+         *            The string builder.
+         * @param start
+         *            The index of the start of the conversion.
+         */
+        protected void justify(StringBuilder builder, int start) {
+            int pad = width - (builder.length() - start);
+            while (pad > 0) {
+                int count = Math.min(pad, SPACES.length());
+                if (left) {
+                    builder.append(SPACES, 0, count);
+                } else {
+                    builder.insert(start, SPACES, 0, count);
+                }
+                pad -= count;
+            }
+        }
+    }
+
+    /**
+     * The <code>%s</code> conversion.
+     */
+    final static class StringConversion extends Conversion {
+        /**
+         * Create a string conversion.
+         *
+         * @param index
+         *            The index of the argument.
+         * @param left
+         *            Whether the conversion is left justified.
+         * @param width
+         *            The width or -1 if there is no width.
+         * @param precision
+         *            The precision or -1 if there is no precision.
+         */
+        public StringConversion(int index, boolean left, int width, int precision) {
+            super(index, left, width, precision, 's');
+        }
+
+        /**
+         * Write the string value of the given argument truncated to the
+         * precision, written by the converter for the type of the argument if
+         * there is one. Formattable arguments without a converter are not
+         * written by hand.
+         *
+         * @param builder
+         *            The string builder.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param argument
+         *            The argument.
+         * @return True if the argument was written.
+         */
+        protected boolean convert(StringBuilder builder, Symbols symbols, Object argument) {
+            int start = builder.length();
+            if (Converters.write(builder, argument)) {
+                if (precision != -1 && builder.length() - start > precision) {
+                    builder.setLength(start + precision);
+                }
+                return true;
+            }
+            if (argument instanceof Formattable) {
+                return false;
+            }
+            String string = argument == null ? "null" : argument.toString();
+            if (precision != -1 && precision < string.length()) {
+                builder.append(string, 0, precision);
+            } else {
+                builder.append(string);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The <code>%d</code> conversion of bytes, shorts, integers and longs.
+     */
+    final static class DecimalConversion extends Conversion {
+        /**
+         * Create a decimal integer conversion.
+         *
+         * @param index
+         *            The index of the argument.
+         * @param left
+         *            Whether the conversion is left justified.
+         * @param width
+         *            The width or -1 if there is no width.
+         */
+        public DecimalConversion(int index, boolean left, int width) {
+            super(index, left, width, -1, 'd');
+        }
+
+        /**
+         * Write the given integer argument in decimal with the digits of the
+         * locale.
+         *
+         * @param builder
+         *            The string builder.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param argument
+         *            The argument.
+         * @return True if the argument was written.
+         */
+        protected boolean convert(StringBuilder builder, Symbols symbols, Object argument) {
+            if (argument instanceof Integer || argument instanceof Long || argument instanceof Short || argument instanceof Byte) {
+                convert(builder, symbols, ((Number) argument).longValue());
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Write the argument at the given index of the given argument list,
+         * writing integer and long arguments without boxing.
+         *
+         * @param builder
+         *            The string builder.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param arguments
+         *            The format arguments.
+         * @param index
+         *            The argument index.
+         * @return True if the argument was written.
+         */
+        protected boolean convert(StringBuilder builder, Symbols symbols, Arguments arguments, int index) {
+            byte type = arguments.getType(index);
+            if (type == Arguments.INT || type == Arguments.LONG) {
+                convert(builder, symbols, arguments.getLong(index));
+                return true;
+            }
+            return super.convert(builder, symbols, arguments, index);
+        }
+
+        /**
+         * Write the given value in decimal with the digits of the locale.
+         *
+         * @param builder
+         *            The string builder.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param value
+         *            The value.
+         */
+        private void convert(StringBuilder builder, Symbols symbols, long value) {
+            int start = builder.length();
+            builder.append(value);
+            symbols.localize(builder, start);
+        }
+    }
+
+    /**
+     * The <code>%x</code> conversion of bytes, shorts, integers and longs.
+     */
+    final static class HexConversion extends Conversion {
+        /**
+         * Create a hexadecimal integer conversion.
+         *
+         * @param index
+         *            The index of the argument.
+         * @param left
+         *            Whether the conversion is left justified.
+         * @param width
+         *            The width or -1 if there is no width.
+         */
+        public HexConversion(int index, boolean left, int width) {
+            super(index, left, width, -1, 'x');
+        }
+
+        /**
+         * Write the given integer argument in hexadecimal as an unsigned value
+         * of the width of its type.
+         *
+         * @param builder
+         *            The string builder.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param argument
+         *            The argument.
+         * @return True if the argument was written.
+         */
+        protected boolean convert(StringBuilder builder, Symbols symbols, Object argument) {
+            if (argument instanceof Integer) {
+                builder.append(Integer.toHexString((Integer) argument));
+            } else if (argument instanceof Long) {
+                builder.append(Long.toHexString((Long) argument));
+            } else if (argument instanceof Short) {
+                builder.append(Integer.toHexString((Short) argument & 0xffff));
+            } else if (argument instanceof Byte) {
+                builder.append(Integer.toHexString((Byte) argument & 0xff));
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Write the argument at the given index of the given argument list,
+         * writing integer and long arguments without boxing.
+         *
+         * @param builder
+         *            The string builder.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param arguments
+         *            The format arguments.
+         * @param index
+         *            The argument index.
+         * @return True if the argument was written.
+         */
+        protected boolean convert(StringBuilder builder, Symbols symbols, Arguments arguments, int index) {
+            switch (arguments.getType(index)) {
+            case Arguments.INT:
+                builder.append(Integer.toHexString((int) arguments.getLong(index)));
+                return true;
+            case Arguments.LONG:
+                builder.append(Long.toHexString(arguments.getLong(index)));
+                return true;
+            default:
+                return super.convert(builder, symbols, arguments, index);
+            }
+        }
+    }
+
+    /**
+     * The <code>%f</code> conversion of doubles and floats.
+     * <p>
+     * <code>Formatter</code> rounds half up the shortest decimal string that
+     * identifies the double. This conversion scales the double by the
+     * precision and rounds it, which gives the same result unless the scaled
+     * value is so close to a half that the decimal string could round the
+     * other way, or the scaled value is too large to round exactly, in which
+     * case the argument is formatted by <code>Formatter</code>.
+     */
+    final static class FloatConversion extends Conversion {
+        /** The powers of ten that are exactly representable as doubles. */
+        private final static double[] POWERS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+        };
+
+        /**
+         * Create a decimal float conversion.
+         *
+         * @param index
+         *            The index of the argument.
+         * @param left
+         *            Whether the conversion is left justified.
+         * @param width
+         *            The width or -1 if there is no width.
+         * @param precision
+         *            The precision or -1 for the default precision.
+         */
+        public FloatConversion(int index, boolean left, int width, int precision) {
+            super(index, left, width, precision, 'f');
+        }
+
+        /**
+         * Write the given double or float argument in decimal with the digits
+         * and decimal separator of the locale.
+         *
+         * @param builder
+         *            The string builder.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param argument
+         *            The argument.
+         * @return True if the argument was written.
+         */
+        protected boolean convert(StringBuilder builder, Symbols symbols, Object argument) {
+            double value;
+            if (argument instanceof Double) {
+                value = (Double) argument;
+            } else if (argument instanceof Float) {
+                value = (Float) argument;
+            } else {
+                return false;
+            }
+            return convert(builder, symbols, value);
+        }
+
+        /**
+         * Write the argument at the given index of the given argument list,
+         * writing double arguments without boxing.
+         *
+         * @param builder
+         *            The string builder.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param arguments
+         *            The format arguments.
+         * @param index
+         *            The argument index.
+         * @return True if the argument was written.
+         */
+        protected boolean convert(StringBuilder builder, Symbols symbols, Arguments arguments, int index) {
+            if (arguments.getType(index) == Arguments.DOUBLE) {
+                return convert(builder, symbols, arguments.getDouble(index));
+            }
+            return super.convert(builder, symbols, arguments, index);
+        }
+
+        /**
+         * Write the given value in decimal with the digits and decimal
+         * separator of the locale, returning false without writing if the
+         * value must be formatted by <code>Formatter</code> to round it the
+         * same way.
+         *
+         * @param builder
+         *            The string builder.
+         * @param symbols
+         *            The number symbols of the locale.
+         * @param value
+         *            The value.
+         * @return True if the value was written.
+         */
+        private boolean convert(StringBuilder builder, Symbols symbols, double value) {
+            if (Double.isNaN(value)) {
+                builder.append("NaN");
+                return true;
+            }
+            boolean negative = Double.compare(value, 0.0) == -1;
+            double magnitude = Math.abs(value);
+            if (Double.isInfinite(magnitude)) {
+                builder.append(negative ? "-Infinity" : "Infinity");
+                return true;
+            }
+            int precision = this.precision == -1 ? 6 : this.precision;
+            if (precision >= POWERS.length) {
+                return false;
+            }
+            double scaled = magnitude * POWERS[precision];
+            if (!(scaled < 0x1p52)) {
+                return false;
+            }
+            double floor = Math.floor(scaled);
+            double fraction = scaled - floor;
+            if (Math.abs(fraction - 0.5) <= scaled * 0x1p-48) {
+                return false;
+            }
+            long rounded = (long) floor + (fraction > 0.5 ? 1 : 0);
+            if (negative) {
+                builder.append('-');
+            }
+            int start = builder.length();
+            builder.append(rounded);
+            int zeros = precision + 1 - (builder.length() - start);
+            while (zeros-- > 0) {
+                builder.insert(start, '0');
+            }
+            symbols.localize(builder, start);
+            if (precision != 0) {
+                builder.insert(builder.length() - precision, symbols.getDecimalSeparator());
+            }
+            return true;
+        }
+    }
+}
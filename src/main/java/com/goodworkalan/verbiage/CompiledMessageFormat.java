@@ -0,0 +1,116 @@
+package com.goodworkalan.verbiage;
+
+import java.text.FieldPosition;
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A <code>java.text.MessageFormat</code> pattern, such as
+ * <code>{0} has {1,choice,0#no files|1#one file|1&lt;{1,number,integer} files}.</code>,
+ * compiled once for each locale in which it is formatted.
+ * <p>
+ * A <code>MessageFormat</code> is not thread safe, so each locale keeps the
+ * compiled format as a prototype and a single free copy. A thread takes the
+ * free copy while it formats and puts it back when it is done. When the free
+ * copy has been taken by another thread, the prototype is cloned, which is
+ * cheaper than parsing the pattern again.
+ *
+ * @author Alan Gutierrez
+ */
+final class CompiledMessageFormat {
+    /** The message format pattern. */
+    private final String pattern;
+
+    /** The number of arguments, one more than the greatest argument index. */
+    private final int argumentCount;
+
+    /** The compiled formats by locale. */
+    private final ConcurrentMap<Locale, Formats> formats = new ConcurrentHashMap<Locale, Formats>();
+
+    /**
+     * Compile the given message format pattern.
+     *
+     * @param pattern
+     *            The message format pattern.
+     * @exception IllegalArgumentException
+     *                If the pattern is not a valid message format pattern.
+     */
+    public CompiledMessageFormat(String pattern) {
+        MessageFormat format = new MessageFormat(pattern, Locale.ROOT);
+        this.pattern = pattern;
+        this.argumentCount = format.getFormatsByArgumentIndex().length;
+    }
+
+    /**
+     * Get the number of arguments, which is one more than the greatest
+     * argument index used by the pattern.
+     *
+     * @return The number of arguments.
+     */
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+    /**
+     * Write the given arguments formatted in the given locale to the given
+     * string builder. Arguments with an argument converter are replaced by
+     * their converted value.
+     *
+     * @param builder
+     *            The string builder.
+     * @param locale
+     *            The locale.
+     * @param arguments
+     *            The format arguments.
+     * @exception IllegalArgumentException
+     *                If an argument does not match its format.
+     */
+    public void format(StringBuilder builder, Locale locale, Arguments arguments) {
+        Formats compiled = formats.get(locale);
+        if (compiled == null) {
+            compiled = new Formats(new MessageFormat(pattern, locale));
+            Formats existing = formats.putIfAbsent(locale, compiled);
+            if (existing != null) {
+                compiled = existing;
+            }
+        }
+        Object[] array = arguments.toArray();
+        for (int i = 0; i < array.length; i++) {
+            array[i] = Converters.convert(array[i]);
+        }
+        MessageFormat format = compiled.free.getAndSet(null);
+        if (format == null) {
+            format = (MessageFormat) compiled.prototype.clone();
+        }
+        try {
+            builder.append(format.format(array, new StringBuffer(), new FieldPosition(0)));
+        } finally {
+            compiled.free.set(format);
+        }
+    }
+
+    /**
+     * The compiled format of a locale.
+     */
+    private final static class Formats {
+        /** The compiled format, which is only cloned. */
+        public final MessageFormat prototype;
+
+        /** A copy of the compiled format that is not in use or null. */
+        public final AtomicReference<MessageFormat> free;
+
+        /**
+         * Create the compiled format of a locale.
+         *
+         * @param prototype
+         *            The compiled format.
+         */
+        public Formats(MessageFormat prototype) {
+            this.prototype = prototype;
+            this.free = new AtomicReference<MessageFormat>((MessageFormat) prototype.clone());
+        }
+    }
+}
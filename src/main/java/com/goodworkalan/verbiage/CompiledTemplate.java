@@ -0,0 +1,343 @@
+package com.goodworkalan.verbiage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A message format read from a resource bundle and parsed once into the list
+ * of compiled argument paths and the sprintf format, so that rendering a
+ * message does no parsing.
+ * <p>
+ * A message format is either a comma separated list of paths and a sprintf
+ * format separated by a tilde, or a tilde followed by text with inline
+ * placeholders, such as <code>{manager.lastName:s}</code>, which name a path
+ * and an optional sprintf conversion. The leading tilde, an empty list of
+ * paths, marks the inline syntax, so that braces in the text of an existing
+ * literal message are never mistaken for placeholders. Inline placeholders
+ * are compiled into the same list of paths and sprintf format as the tilde
+ * syntax.
+ * <p>
+ * A message format after a leading tilde with numbered placeholders, such as
+ * <code>{0}</code> or <code>{1,choice,0#files|1#file|1&lt;files}</code>, and
+ * no inline placeholders is a <code>java.text.MessageFormat</code> pattern,
+ * whose quoting rules apply, so that an apostrophe is written as two. Its
+ * arguments are the paths <code>$1</code> through <code>$n</code>, so that
+ * <code>{0}</code> is the first positioned argument, and it is formatted by
+ * a compiled message format that is cached for each locale. Without the
+ * leading tilde, numbered placeholders and apostrophes are literal text.
+ * <p>
+ * A message format with no argument paths is a literal that is returned as is.
+ * The special <code>$@</code> path is recorded as an expansion of the
+ * positioned arguments.
+ *
+ * @author Alan Gutierrez
+ */
+final class CompiledTemplate {
+    /** The special path that expands to the list of positioned arguments. */
+    public final static String POSITIONED = "$@";
+
+    /** True if the message format is blank. */
+    private final boolean blank;
+
+    /**
+     * The argument paths or null if the message format is returned as is. The
+     * positioned argument expansion is recorded as a null path.
+     */
+    private final String[] paths;
+
+    /**
+     * The compiled argument paths, where the positioned argument expansion
+     * and any path that is not a valid path are null.
+     */
+    private final PathExpression[] expressions;
+
+    /** The count of positioned argument expansions in the paths. */
+    private final int expansions;
+
+    /** The sprintf format or the literal message. */
+    private final String format;
+
+    /**
+     * The compiled sprintf format or null if the message is a literal or a
+     * message format pattern.
+     */
+    private final CompiledFormat compiledFormat;
+
+    /**
+     * The compiled message format pattern or null if the message is not a
+     * message format pattern.
+     */
+    private final CompiledMessageFormat compiledMessageFormat;
+
+    /**
+     * Compile the given message format.
+     *
+     * @param pattern
+     *            The message format from the resource bundle.
+     */
+    public CompiledTemplate(String pattern) {
+        pattern = pattern.trim();
+        List<String> paths = new ArrayList<String>();
+        String format = null;
+        CompiledMessageFormat compiledMessageFormat = null;
+        int tilde = pattern.indexOf('~');
+        if (tilde == 0) {
+            pattern = pattern.substring(1).trim();
+            if (!isInline(pattern) && isMessageFormat(pattern)) {
+                try {
+                    compiledMessageFormat = new CompiledMessageFormat(pattern);
+                    for (int i = 1; i <= compiledMessageFormat.getArgumentCount(); i++) {
+                        paths.add("$" + i);
+                    }
+                    format = pattern;
+                } catch (IllegalArgumentException e) {
+                    // Not a message format pattern, so parsed as inline.
+                }
+            }
+            if (format == null && pattern.length() != 0) {
+                format = parseInline(pattern, paths);
+            }
+        } else if (tilde != -1) {
+            int start = -1, end, stop = tilde;
+            while (start != stop) {
+                start++;
+                end = pattern.indexOf(',', start);
+                if (end == -1 || end > stop) {
+                    end = stop;
+                }
+                String path = pattern.substring(start, end);
+                start = end;
+                paths.add(path.equals(POSITIONED) ? null : path);
+            }
+            format = pattern.substring(tilde + 1);
+        }
+        if (format == null) {
+            this.blank = pattern.length() == 0;
+            this.paths = null;
+            this.expressions = null;
+            this.expansions = 0;
+            this.format = pattern;
+            this.compiledFormat = null;
+            this.compiledMessageFormat = null;
+        } else {
+            int expansions = 0;
+            this.blank = false;
+            this.paths = paths.toArray(new String[paths.size()]);
+            this.expressions = new PathExpression[this.paths.length];
+            for (int i = 0; i < this.paths.length; i++) {
+                if (this.paths[i] == null) {
+                    expansions++;
+                } else {
+                    try {
+                        this.expressions[i] = new PathExpression(this.paths[i]);
+                    } catch (IllegalArgumentException e) {
+                        // Reported as a bad format argument when rendered.
+                    }
+                }
+            }
+            this.expansions = expansions;
+            this.format = format;
+            this.compiledFormat = compiledMessageFormat == null ? new CompiledFormat(format) : null;
+            this.compiledMessageFormat = compiledMessageFormat;
+        }
+    }
+
+    /**
+     * Whether the given pattern has inline placeholders, which is when it
+     * contains a brace followed by the start of a path.
+     *
+     * @param pattern
+     *            The pattern.
+     * @return True if the pattern has inline placeholders.
+     */
+    private static boolean isInline(String pattern) {
+        int brace = pattern.indexOf('{');
+        while (brace != -1) {
+            if (isPlaceholder(pattern, brace)) {
+                return true;
+            }
+            brace = pattern.indexOf('{', brace + 1);
+        }
+        return false;
+    }
+
+    /**
+     * Whether the brace at the given index of the given pattern starts a
+     * placeholder, which is when it is followed by a Java identifier start
+     * character or a dollar sign and closed by a brace.
+     *
+     * @param pattern
+     *            The pattern.
+     * @param brace
+     *            The index of the opening brace.
+     * @return True if the brace starts a placeholder.
+     */
+    private static boolean isPlaceholder(String pattern, int brace) {
+        return brace + 1 < pattern.length() && Character.isJavaIdentifierStart(pattern.charAt(brace + 1)) && pattern.indexOf('}', brace) != -1;
+    }
+
+    /**
+     * Whether the given pattern could be a message format pattern, which is
+     * when it contains a brace followed by a digit.
+     *
+     * @param pattern
+     *            The pattern.
+     * @return True if the pattern has numbered placeholders.
+     */
+    private static boolean isMessageFormat(String pattern) {
+        int brace = pattern.indexOf('{');
+        while (brace != -1) {
+            if (brace + 1 < pattern.length() && Character.isDigit(pattern.charAt(brace + 1))) {
+                return true;
+            }
+            brace = pattern.indexOf('{', brace + 1);
+        }
+        return false;
+    }
+
+    /**
+     * Parse a pattern in the inline syntax, adding the path of each
+     * placeholder to the given list of paths and returning the equivalent
+     * sprintf format. The positioned argument expansion is added as a null
+     * path.
+     * <p>
+     * A placeholder is a path in braces followed by an optional colon and a
+     * sprintf conversion without its leading percent sign, which is
+     * <code>s</code> if it is not given. Doubled braces are literal braces
+     * and percent signs are literal percent signs.
+     *
+     * @param pattern
+     *            The pattern.
+     * @param paths
+     *            The list of paths.
+     * @return The sprintf format.
+     */
+    private static String parseInline(String pattern, List<String> paths) {
+        StringBuilder format = new StringBuilder();
+        for (int i = 0, stop = pattern.length(); i < stop; i++) {
+            char ch = pattern.charAt(i);
+            if ((ch == '{' || ch == '}') && i + 1 < stop && pattern.charAt(i + 1) == ch) {
+                format.append(ch);
+                i++;
+            } else if (ch == '{' && isPlaceholder(pattern, i)) {
+                int close = pattern.indexOf('}', i);
+                int colon = pattern.indexOf(':', i);
+                if (colon == -1 || colon > close) {
+                    colon = close;
+                }
+                String path = pattern.substring(i + 1, colon);
+                paths.add(path.equals(POSITIONED) ? null : path);
+                format.append('%').append(colon + 1 < close ? pattern.substring(colon + 1, close) : "s");
+                i = close;
+            } else if (ch == '%') {
+                format.append("%%");
+            } else {
+                format.append(ch);
+            }
+        }
+        return format.toString();
+    }
+
+    /**
+     * Whether the message format is blank.
+     *
+     * @return True if the message format is blank.
+     */
+    public boolean isBlank() {
+        return blank;
+    }
+
+    /**
+     * Whether the message format is returned as is because it selects no
+     * arguments.
+     *
+     * @return True if the message format is a literal.
+     */
+    public boolean isLiteral() {
+        return paths == null;
+    }
+
+    /**
+     * Get the argument paths where a positioned argument expansion is
+     * recorded as a null path.
+     *
+     * @return The argument paths.
+     */
+    public String[] getPaths() {
+        return paths;
+    }
+
+    /**
+     * Get the compiled argument paths, where the positioned argument
+     * expansion and any path that is not a valid path are null.
+     *
+     * @return The compiled argument paths.
+     */
+    public PathExpression[] getExpressions() {
+        return expressions;
+    }
+
+    /**
+     * Get the count of positioned argument expansions in the paths.
+     *
+     * @return The count of positioned argument expansions.
+     */
+    public int getExpansions() {
+        return expansions;
+    }
+
+    /**
+     * Whether the message format is a <code>java.text.MessageFormat</code>
+     * pattern.
+     *
+     * @return True if the message format is a message format pattern.
+     */
+    public boolean isMessageFormat() {
+        return compiledMessageFormat != null;
+    }
+
+    /**
+     * Get the sprintf format, the message format pattern, or the literal
+     * message if the message is returned as is.
+     *
+     * @return The format.
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * Get the compiled sprintf format or null if the message is returned as
+     * is or is a message format pattern.
+     *
+     * @return The compiled format.
+     */
+    public CompiledFormat getCompiledFormat() {
+        return compiledFormat;
+    }
+
+    /**
+     * Write the given arguments formatted in the given locale to the given
+     * string builder using the compiled sprintf format or the compiled
+     * message format pattern.
+     *
+     * @param builder
+     *            The string builder.
+     * @param locale
+     *            The locale.
+     * @param symbols
+     *            The number formatting symbols of the locale.
+     * @param arguments
+     *            The format arguments.
+     * @exception IllegalArgumentException
+     *                If an argument does not match its conversion.
+     */
+    public void format(StringBuilder builder, Locale locale, Symbols symbols, Arguments arguments) {
+        if (compiledMessageFormat == null) {
+            compiledFormat.format(builder, locale, symbols, arguments);
+        } else {
+            compiledMessageFormat.format(builder, locale, arguments);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.goodworkalan.verbiage;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The registry of argument converters.
+ * <p>
+ * The converter for a type is the converter registered for the type itself,
+ * or else for its nearest superclass, or else for the first of its interfaces
+ * found searching the type and then its superclasses. The converter found for
+ * a type is cached in a class value, so that finding it is a single lookup.
+ * Registering or unregistering a converter invalidates the cached converters.
+ * <p>
+ * The registry does not keep the classes of an application from being
+ * unloaded. The registered types are held weakly, and the registry and the
+ * cache hold the converters weakly. Each converter is held strongly only by
+ * a class value of its own class, which is reachable from the class loader
+ * of the converter, so a converter is registered for as long as the class
+ * loader of its class is alive, even if it is never unregistered.
+ * <p>
+ * Strings are never converted. Classes are converted to their names by
+ * default.
+ *
+ * @author Alan Gutierrez
+ */
+final class Converters {
+    /** The converter of classes, which writes the class name. */
+    private final static ArgumentConverter<Class<?>> CLASS_NAME = new ArgumentConverter<Class<?>>() {
+        public void write(StringBuilder builder, Class<?> value) {
+            builder.append(value.getName());
+        }
+    };
+
+    /**
+     * The converters by the type for which they were registered, guarded by
+     * the class lock.
+     */
+    private final static Map<Class<?>, WeakReference<ArgumentConverter<?>>> registered = new WeakHashMap<Class<?>, WeakReference<ArgumentConverter<?>>>();
+
+    /**
+     * The registered converters of each converter class, which keep the
+     * converters for as long as the class loader of their class, guarded by
+     * the class lock.
+     */
+    private final static ClassValue<List<ArgumentConverter<?>>> anchors = new ClassValue<List<ArgumentConverter<?>>>() {
+        protected List<ArgumentConverter<?>> computeValue(Class<?> type) {
+            return new ArrayList<ArgumentConverter<?>>();
+        }
+    };
+
+    /** The cache of converters found for each type. */
+    private final static ClassValue<Found> found = new ClassValue<Found>() {
+        protected Found computeValue(Class<?> type) {
+            int version = Converters.version;
+            return new Found(version, find(type));
+        }
+    };
+
+    /** Incremented when a converter is registered or unregistered. */
+    private static volatile int version;
+
+    static {
+        register(Class.class, CLASS_NAME);
+    }
+
+    /** This is a utility class. */
+    private Converters() {
+    }
+
+    /**
+     * Register the given converter for the given type, replacing any
+     * converter registered for the type.
+     *
+     * @param type
+     *            The type.
+     * @param converter
+     *            The converter.
+     */
+    public static synchronized void register(Class<?> type, ArgumentConverter<?> converter) {
+        if (converter == null) {
+            throw new NullPointerException();
+        }
+        release(registered.put(type, new WeakReference<ArgumentConverter<?>>(converter)));
+        anchors.get(converter.getClass()).add(converter);
+        version++;
+    }
+
+    /**
+     * Unregister the converter registered for the given type.
+     *
+     * @param type
+     *            The type.
+     */
+    public static synchronized void unregister(Class<?> type) {
+        release(registered.remove(type));
+        version++;
+    }
+
+    /**
+     * Release the strong reference to the given replaced or unregistered
+     * converter.
+     *
+     * @param reference
+     *            The reference to the converter or null if there was none.
+     */
+    private static void release(WeakReference<ArgumentConverter<?>> reference) {
+        ArgumentConverter<?> converter = reference == null ? null : reference.get();
+        if (converter != null) {
+            anchors.get(converter.getClass()).remove(converter);
+        }
+    }
+
+    /**
+     * Get the converter for the given type.
+     *
+     * @param type
+     *            The type.
+     * @return The converter or null if there is no converter for the type.
+     */
+    @SuppressWarnings("unchecked")
+    public static ArgumentConverter<Object> get(Class<?> type) {
+        Found converter = found.get(type);
+        if (converter.version != version) {
+            found.remove(type);
+            converter = found.get(type);
+        }
+        return converter.converter == null ? null : (ArgumentConverter<Object>) converter.converter.get();
+    }
+
+    /**
+     * Write the text of the given argument to the given string builder if
+     * there is a converter for the type of the argument.
+     *
+     * @param builder
+     *            The string builder.
+     * @param value
+     *            The argument.
+     * @return True if the argument was written.
+     */
+    public static boolean write(StringBuilder builder, Object value) {
+        if (value == null || value instanceof String) {
+            return false;
+        }
+        ArgumentConverter<Object> converter = get(value.getClass());
+        if (converter == null) {
+            return false;
+        }
+        converter.write(builder, value);
+        return true;
+    }
+
+    /**
+     * Convert the given argument with the converter for its type, if there is
+     * one.
+     *
+     * @param value
+     *            The argument.
+     * @return The converted argument or the argument itself if there is no
+     *         converter for its type.
+     */
+    public static Object convert(Object value) {
+        if (value == null || value instanceof String) {
+            return value;
+        }
+        ArgumentConverter<Object> converter = get(value.getClass());
+        return converter == null ? value : converter.convert(value);
+    }
+
+    /**
+     * Get the text of the given argument, written by the converter for its
+     * type if there is one.
+     *
+     * @param value
+     *            The argument, which is not null.
+     * @return The text of the argument.
+     */
+    public static String toString(Object value) {
+        if (value instanceof String) {
+            return (String) value;
+        }
+        ArgumentConverter<Object> converter = get(value.getClass());
+        if (converter == null) {
+            return value.toString();
+        }
+        StringBuilder builder = new StringBuilder();
+        converter.write(builder, value);
+        return builder.toString();
+    }
+
+    /**
+     * Find the converter registered for the given type or its nearest
+     * supertype.
+     *
+     * @param type
+     *            The type.
+     * @return A weak reference to the converter or null if there is none.
+     */
+    private static synchronized WeakReference<ArgumentConverter<?>> find(Class<?> type) {
+        for (Class<?> superclass = type; superclass != null; superclass = superclass.getSuperclass()) {
+            WeakReference<ArgumentConverter<?>> converter = registered.get(superclass);
+            if (converter != null) {
+                return converter;
+            }
+        }
+        List<Class<?>> interfaces = new ArrayList<Class<?>>();
+        for (Class<?> superclass = type; superclass != null; superclass = superclass.getSuperclass()) {
+            for (Class<?> iface : superclass.getInterfaces()) {
+                interfaces.add(iface);
+            }
+        }
+        for (int i = 0; i < interfaces.size(); i++) {
+            WeakReference<ArgumentConverter<?>> converter = registered.get(interfaces.get(i));
+            if (converter != null) {
+                return converter;
+            }
+            for (Class<?> iface : interfaces.get(i).getInterfaces()) {
+                interfaces.add(iface);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A converter found for a type and the registry version it was found in.
+     */
+    private final static class Found {
+        /** The registry version. */
+        public final int version;
+
+        /** A weak reference to the converter or null if there is none. */
+        public final WeakReference<ArgumentConverter<?>> converter;
+
+        /**
+         * Create a found converter.
+         *
+         * @param version
+         *            The registry version.
+         * @param converter
+         *            A weak reference to the converter or null.
+         */
+        public Found(int version, WeakReference<ArgumentConverter<?>> converter) {
+            this.version = version;
+            this.converter = converter;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.goodworkalan.verbiage;
+
+import java.io.Serializable;
+
+/**
+ * The message of a <code>VerbiageException</code> or a
+ * <code>VerbiageRuntimeException</code>, which renders the message when it is
+ * first used and caches the rendered message.
+ * <p>
+ * The message is serialized in its compact form and the rendered message is
+ * not serialized, so that the message is rendered again by the process that
+ * reads the exception.
+ *
+ * @author Alan Gutierrez
+ */
+final class ExceptionMessage implements Serializable {
+    /** The serial version id. */
+    private final static long serialVersionUID = 1L;
+
+    /** The message. */
+    private final Message message;
+
+    /** The rendered message or null if it has not been rendered. */
+    private transient String rendered;
+
+    /**
+     * Create an exception message for the given message.
+     *
+     * @param message
+     *            The message.
+     */
+    public ExceptionMessage(Message message) {
+        this.message = message;
+    }
+
+    /**
+     * Get the message.
+     *
+     * @return The message.
+     */
+    public Message getMessage() {
+        return message;
+    }
+
+    /**
+     * Get the rendered message, rendering it and caching it on first use.
+     *
+     * @return The rendered message.
+     */
+    public String getRendered() {
+        String rendered = this.rendered;
+        if (rendered == null) {
+            rendered = message.toString();
+            this.rendered = rendered;
+        }
+        return rendered;
+    }
+}
@@ -1,13 +1,15 @@
 package com.goodworkalan.verbiage;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
-import java.util.MissingResourceException;
-import java.util.NoSuchElementException;
-import java.util.ResourceBundle;
 
 /**
  * A sprintf formatted internationalized message. The message uses an message
@@ -16,15 +18,25 @@ import java.util.ResourceBundle;
  * message display its parameters in a different order, sprintf formatting can
  * handle it.
  * <p>
- * The message accepts a concurrent hash map that is used to cache the message
- * bundles so they do not have to be loaded for each message. The cache is
- * provided as an argument so that derived classes can keep a static reference
- * to a single instance of the bundle map. In this way, if the derived class is
- * reloaded within an application container, but the message class is not, the
- * old bundle will become unreachable when the class becomes unreachable and the
- * resource bundle will be collected with the derived class. If a class loader
- * loads the derived classes that reference the same resource bundle path, the
- * resource bundle will be reloaded since the old cache is unreachable.
+ * The message bundles are cached so they do not have to be loaded for each
+ * message. The cache is keyed by class loader, bundle path and locale, and it
+ * holds the class loaders weakly. In this way, if an application is reloaded
+ * within an application container, but the message class is not, the old
+ * bundles will become unreachable when the old class loader becomes
+ * unreachable and the resource bundles will be collected with the class
+ * loader. If a new class loader loads classes that reference the same resource
+ * bundle path, the resource bundle will be reloaded for the new class loader.
+ * The bundle is not resolved when the message is created, but when the message
+ * is first rendered, using the context class loader and locale captured when
+ * the message was created.
+ * <p>
+ * A message is loaded and formatted in the locale given when it is created,
+ * or the default locale if none is given, and numbers are formatted with the
+ * number formatting symbols of that locale. The same message can be rendered
+ * in another locale with <code>toString(Locale)</code>, so that a server can
+ * render a message in the locale of each request. Message templates are
+ * compiled once for each key in each locale, and number formatting symbols
+ * are resolved once for each locale.
  * <p>
  * The context string is used to determine the package to used to find the
  * resource bundle. The context string is assumed to be a canonical class name.
@@ -55,7 +67,9 @@ import java.util.ResourceBundle;
  * As noted, you can select items using a dotted object path that will
  * dereference items in a nested graph of maps and lists where objects are
  * leaves. The dotted path language will not evaluate public fields or bean
- * property getters.
+ * property getters unless property accessors are enabled with
+ * <code>setAccessors</code>, in which case bean properties, record components
+ * and public fields are dereferenced as well.
  * <p>
  * <code>1102: manager.lastName,employee.lastName~The manager %s does not manage the employee %s.</code>
  * <p>
@@ -70,12 +84,67 @@ import java.util.ResourceBundle;
  * <p>
  * If no arguments are selected for use in a message, then the message format is
  * not run through sprintf and is returned as is.
+ * <p>
+ * The paths can also be written inline, after a leading tilde that stands for
+ * an empty list of paths, each path in braces followed by an optional colon
+ * and sprintf conversion without its percent sign. A path without a
+ * conversion is formatted with <code>%s</code>. Doubled braces are literal
+ * braces. Without the leading tilde, braces are literal text, so existing
+ * messages that contain braces are not changed. Inline messages and tilde
+ * separated messages can be mixed in the same bundle.
+ * <p>
+ * <code>1104: ~The manager {manager.lastName} does not manage {employee.lastName} after {duration:.1f} days.</code>
+ * <p>
+ * Messages ported from <code>java.text.MessageFormat</code> can be used by
+ * adding a leading tilde. A message format after a leading tilde with
+ * numbered placeholders and no inline placeholders is formatted as a message
+ * format pattern, where <code>{0}</code> is the positioned argument
+ * <code>$1</code>, and choice, number and date formats and apostrophe quoting
+ * behave as they do for a message format. Without the leading tilde, the
+ * message is not a message format pattern.
+ * <p>
+ * <code>1105: ~File {0} not found in {1,number,integer} {1,choice,0#modules|1#module|1&lt;modules}.</code>
+ * <p>
+ * A message is serialized unrendered in a compact form that contains only the
+ * values selected by the paths of its message template, not the graph of
+ * variables, so that it can be rendered by the process that reads it. A
+ * subclass of message is serialized in the same compact form and read back as
+ * a plain message, so that any state or behavior it adds is lost, unless the
+ * subclass overrides <code>writeReplace</code>. Since only the values selected
+ * by the template in the locale of the message are written, a message that is
+ * read and rendered in another locale whose template selects a path that was
+ * not written is rendered in the locale in which it was written.
  * 
  * @author Alan Gutierrez
  */
-public class Message {
-    /** The resource bundle from which to read the message format. */
-    private final ResourceBundle bundle;
+public class Message implements Serializable {
+    /** The serial version id. */
+    private final static long serialVersionUID = 1L;
+
+    /** The path of the bundle of meta error messages. */
+    private final static String META_BUNDLE_PATH = "com.goodworkalan.verbiage.missing";
+
+    /**
+     * Whether messages are rendered using pooled scratch buffers, initially
+     * set by the <code>com.goodworkalan.verbiage.pooling</code> system
+     * property.
+     */
+    private static volatile boolean pooling = Boolean.getBoolean("com.goodworkalan.verbiage.pooling");
+
+    /**
+     * The class loader used to load the resource bundle, which is the context
+     * class loader of the thread that created the message.
+     */
+    private final ClassLoader classLoader;
+
+    /** The locale used to load the resource bundle and format the message. */
+    private final Locale locale;
+
+    /**
+     * The bundle from which to read the message template or null if it has
+     * not yet been resolved.
+     */
+    private Bundle bundle;
     
     /**
      * The notice context, which is a class name, but it is not a class, because
@@ -93,6 +162,19 @@ public class Message {
     /** The map of object variables. */
     private final Map<?, ?> variables;
 
+    /**
+     * The positioned arguments or null if the positioned arguments are named
+     * in the map of variables.
+     */
+    private final Arguments positioned;
+
+    /**
+     * Whether the map of variables maps the paths selected by the message
+     * template to their values, instead of being a graph navigated by the
+     * paths.
+     */
+    private final boolean selected;
+
     /**
      * <p>
      * The context must always be qualified, it must reference a package other
@@ -138,29 +220,236 @@ public class Message {
      *            The map of variables.
      */
     public Message(String context, String bundleName, String messageKey, Map<?,?> variables) {
+        this(context, bundleName, messageKey, variables, null, false, Thread.currentThread().getContextClassLoader(), Locale.getDefault());
+    }
+
+    /**
+     * Create a message with the given named variables and the given
+     * positioned arguments. The positioned arguments are bound to
+     * <code>$1</code>, <code>$2</code>, <code>$3</code> and so on, and to the
+     * <code>$@</code> expansion, directly from the given array. They are not
+     * added to the map of variables, and a path that begins with a positioned
+     * argument name is never looked up in the map of variables.
+     * 
+     * <code><pre>
+     * 1011: $@,module~File %s not found in ~%s/foo while running module %s.
+     * </pre></code>
+     * 
+     * @param context
+     *            The message bundle context.
+     * @param bundleName
+     *            The message bundle file name.
+     * @param messageKey
+     *            The message key.
+     * @param variables
+     *            The map of variables or null for no named variables.
+     * @param positioned
+     *            The positioned arguments.
+     */
+    public Message(String context, String bundleName, String messageKey, Map<?,?> variables, Object...positioned) {
+        this(context, bundleName, messageKey, variables, positioned == null ? null : new Arguments(positioned));
+    }
+
+    /**
+     * Create a message that is loaded and formatted in the given locale with
+     * the given named variables and the given positioned arguments.
+     * 
+     * @param locale
+     *            The locale used to load the resource bundle and format the
+     *            message.
+     * @param context
+     *            The message bundle context.
+     * @param bundleName
+     *            The message bundle file name.
+     * @param messageKey
+     *            The message key.
+     * @param variables
+     *            The map of variables or null for no named variables.
+     * @param positioned
+     *            The positioned arguments.
+     */
+    public Message(Locale locale, String context, String bundleName, String messageKey, Map<?,?> variables, Object...positioned) {
+        this(context, bundleName, messageKey, variables == null ? Collections.emptyMap() : variables, positioned == null ? null : new Arguments(positioned), false, Thread.currentThread().getContextClassLoader(), locale);
+    }
+
+    /**
+     * Create a message with the given named variables and the given
+     * positioned argument list, which may hold primitive arguments.
+     * 
+     * @param context
+     *            The message bundle context.
+     * @param bundleName
+     *            The message bundle file name.
+     * @param messageKey
+     *            The message key.
+     * @param variables
+     *            The map of variables or null for no named variables.
+     * @param positioned
+     *            The positioned arguments or null if the positioned
+     *            arguments are named in the map of variables.
+     */
+    Message(String context, String bundleName, String messageKey, Map<?,?> variables, Arguments positioned) {
+        this(context, bundleName, messageKey, variables == null ? Collections.emptyMap() : variables, positioned, false, Thread.currentThread().getContextClassLoader(), Locale.getDefault());
+    }
+
+    /**
+     * Create a message with the given class loader and locale.
+     * 
+     * @param context
+     *            The message bundle context.
+     * @param bundleName
+     *            The message bundle file name.
+     * @param messageKey
+     *            The message key.
+     * @param variables
+     *            The map of variables.
+     * @param positioned
+     *            The positioned arguments or null if the positioned
+     *            arguments are named in the map of variables.
+     * @param selected
+     *            Whether the map of variables maps the paths selected by the
+     *            message template to their values.
+     * @param classLoader
+     *            The class loader used to load the resource bundle.
+     * @param locale
+     *            The locale used to load the resource bundle and format the
+     *            message.
+     */
+    Message(String context, String bundleName, String messageKey, Map<?,?> variables, Arguments positioned, boolean selected, ClassLoader classLoader, Locale locale) {
         this.context = context;
         this.bundleName = bundleName;
-        this.variables = variables;
         this.messageKey = messageKey;
-        this.bundle = getResourceBundle(context, bundleName); 
+        this.variables = variables;
+        this.positioned = positioned;
+        this.selected = selected;
+        this.classLoader = classLoader;
+        this.locale = locale;
     }
 
-	/**
-	 * Get the resource bundle for the given context and bundle name.
-	 * 
-	 * @param context
-	 *            The context.
-	 * @param bundleName
-	 *            The bundle name.
-	 * @return The resource bundle or null if the resource bundle cannot be
-	 *         loaded.
-	 */
-    private static ResourceBundle getResourceBundle(String context, String bundleName) {
-    	try {
-    		return ResourceBundle.getBundle(getBundlePath(context, bundleName), Locale.getDefault(), Thread.currentThread().getContextClassLoader());
-    	} catch (MissingResourceException e) {
-    		return null;
-    	}
+    /**
+     * Create a builder for a message with the given context, bundle name and
+     * message key. The builder binds positioned arguments, storing integers,
+     * longs and doubles without boxing them.
+     * 
+     * <code><pre>
+     * Message message = Message.builder(context, "exceptions", "timeout").arg(threadId).arg(seconds).build();
+     * </pre></code>
+     * 
+     * @param context
+     *            The message bundle context.
+     * @param bundleName
+     *            The message bundle file name.
+     * @param messageKey
+     *            The message key.
+     * @return A message builder.
+     */
+    public static MessageBuilder builder(String context, String bundleName, String messageKey) {
+        return new MessageBuilder(context, bundleName, messageKey);
+    }
+
+    /**
+     * Set whether messages are rendered using scratch buffers taken from a
+     * small pool shared by all threads, instead of allocating a new string
+     * builder and argument array for each message rendered. Pooling reduces
+     * garbage when many messages are rendered, at the cost of contention for
+     * the pool when many threads render messages at once.
+     * 
+     * @param pooling
+     *            Whether to render messages using pooled scratch buffers.
+     */
+    public static void setPooling(boolean pooling) {
+        Message.pooling = pooling;
+    }
+
+    /**
+     * Whether messages are rendered using pooled scratch buffers.
+     * 
+     * @return True if messages are rendered using pooled scratch buffers.
+     */
+    public static boolean isPooling() {
+        return pooling;
+    }
+
+    /**
+     * Set whether paths read the properties of objects that are not maps,
+     * lists or arrays. When enabled, a path part that is a Java identifier
+     * reads the bean property getter, boolean <code>is</code> getter, record
+     * component or public field of that name, so that domain objects can be
+     * given as variables without copying them into maps. The accessor of each
+     * property is resolved once for each class and cached as a method handle.
+     * Accessors are initially enabled by the
+     * <code>com.goodworkalan.verbiage.accessors</code> system property.
+     * 
+     * @param accessors
+     *            Whether to read the properties of objects.
+     */
+    public static void setAccessors(boolean accessors) {
+        Accessors.enabled = accessors;
+    }
+
+    /**
+     * Whether paths read the properties of objects that are not maps, lists or
+     * arrays.
+     * 
+     * @return True if paths read the properties of objects.
+     */
+    public static boolean isAccessors() {
+        return Accessors.enabled;
+    }
+
+    /**
+     * Register a converter that writes the format arguments of the given type
+     * and its subtypes, replacing any converter registered for the type.
+     * Classes are converted to their names by default, without the prefix of
+     * "class" or "interface." String arguments are never converted.
+     * <p>
+     * The registry holds the type weakly and holds the converter only for as
+     * long as the class loader of the class of the converter is alive, so a
+     * converter registered by an application does not keep the application
+     * from being unloaded, and it is dropped with the application even if it
+     * is never unregistered. A converter whose class is loaded by a shared
+     * class loader must not reference the classes of an application.
+     * 
+     * @param <T>
+     *            The type of argument.
+     * @param type
+     *            The type of argument.
+     * @param converter
+     *            The converter.
+     */
+    public static <T> void registerConverter(Class<T> type, ArgumentConverter<? super T> converter) {
+        Converters.register(type, converter);
+    }
+
+    /**
+     * Unregister the converter registered for the given type.
+     * 
+     * @param type
+     *            The type of argument.
+     */
+    public static void unregisterConverter(Class<?> type) {
+        Converters.unregister(type);
+    }
+
+    /**
+     * Clear the cache of resource bundles and compiled message templates for
+     * the given class loader, including the record of bundles and message keys
+     * that could not be found, so that they are loaded again when next used.
+     * 
+     * @param classLoader
+     *            The class loader.
+     */
+    public static void clearCache(ClassLoader classLoader) {
+        BundleCache.clear(classLoader);
+    }
+
+    /**
+     * Clear the cache of resource bundles and compiled message templates for
+     * all class loaders, including the record of bundles and message keys that
+     * could not be found, so that they are loaded again when next used.
+     */
+    public static void clearCache() {
+        BundleCache.clear();
     }
 
     /**
@@ -188,6 +477,15 @@ public class Message {
         return bundleName;
     }
 
+    /**
+     * Get the locale used to load the resource bundle and format the message.
+     * 
+     * @return The locale.
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
     /**
      * Get the key of the message in the resource bundle.
      * 
@@ -215,78 +513,6 @@ public class Message {
         return variables;
     }
 
-    /**
-     * Evaluate the given path against the argument structure.
-     * 
-     * @param path
-     *            The path.
-     * @return The value found by navigating the path or null if the path does
-     *         not exist.
-     * @exception IllegalArgumentException
-     *                If any part of the given path is not a valid Java
-     *                identifier or list index.
-     */
-    private Object getValue(String path) {
-        int start = -1, end, stop = path.length();
-        Object current = variables;
-        while (start != stop) {
-            start++;
-            end = path.indexOf('.', start);
-            if (end == -1) {
-                end = stop;
-            }
-            String name = path.substring(start, end);
-            start = end;
-            if (current instanceof Map<?, ?>) {
-                if (!Indexes.checkJavaIdentifier(name)) {
-                    throw new IllegalArgumentException();
-                }
-                current = ((Map<?, ?>) current).get(name);
-            } else if (current instanceof List<?>) {
-                int index = asIndex(name);
-                List<?> list = (List<?>) current;
-                if (index >= list.size()) {
-                    throw new NoSuchElementException();
-                }
-                current = list.get(index);
-            } else if (current != null && current.getClass().isArray()) {
-                int index = asIndex(name);
-                Object[] array = (Object[]) current;
-                if (index >= array.length) {
-                    throw new NoSuchElementException();
-                }
-                current = array[index];
-            } else {
-                throw new NoSuchElementException();
-            }
-        }
-        return current;
-    }
-
-    /**
-     * Convert the path part to an integer index and raise an exception if it is
-     * not a valid integer index.
-     * 
-     * @param name
-     *            The path part.
-     * @return The integer value.
-     * @exception NoSuchElementException
-     *                If the name is not an integer index but is a valid Java
-     *                identifier.
-     * @exception If
-     *                the name is neither an integer index nor a valid Java
-     *                identifier.
-     */
-    private int asIndex(String name) {
-        if (!Indexes.isInteger(name)) {
-            if (!Indexes.checkJavaIdentifier(name)) {
-                throw new IllegalArgumentException();
-            }
-            throw new NoSuchElementException();
-        }
-        return Integer.parseInt(name, 10);
-    }
-
     /**
      * Get the value in the report structure at the given path.
      * 
@@ -299,27 +525,10 @@ public class Message {
      *                identifier or list index.
      */
     public Object get(String path) {
-        try {
-            return getValue(path);
-        } catch (NoSuchElementException e) {
-            return null;
+        if (selected) {
+            return variables.get(path);
         }
-    }
-
-    /**
-     * Convert a class to its class name for format output. I don't like
-     * the prefix of "class" or "interface."
-     * 
-     * @param value
-     *            The object to convert.
-     * @return The object or the class name if the object is class.
-     */
-    private Object convertClasses(Object value) {
-        // My personal preference.
-        if (value instanceof Class<?>) {
-            return ((Class<?>) value).getName();
-        }
-        return value;
+        return PathExpression.valueOf(path).get(variables, positioned);
     }
 
 	/**
@@ -338,103 +547,641 @@ public class Message {
 	 * @return The generated bundle name.
 	 */
     private static String getBundlePath(String context, String bundleName) {
-        String bundlePath = "com.goodworkalan.verbiage.package";
-        int dot = context.lastIndexOf('.');
-        if (dot != -1) {
-            String packageName = context.substring(0, dot);
-            bundlePath = packageName + "." + bundleName;
+        return context.substring(0, context.lastIndexOf('.')) + "." + bundleName;
+    }
+
+    /**
+     * Write the formatted message to the given string builder. If the message
+     * cannot be formatted, a meta error message is written in its place.
+     * 
+     * @param builder
+     *            The string builder.
+     */
+    public void formatTo(StringBuilder builder) {
+        formatTo(builder, getBundle());
+    }
+
+    /**
+     * Write the message formatted in the given locale to the given string
+     * builder. The message template is read from the bundle for the given
+     * locale. If the message cannot be formatted, a meta error message is
+     * written in its place.
+     * 
+     * @param builder
+     *            The string builder.
+     * @param locale
+     *            The locale.
+     */
+    public void formatTo(StringBuilder builder, Locale locale) {
+        formatTo(builder, getBundle(locale));
+    }
+
+    /**
+     * Write the message formatted with the given bundle to the given string
+     * builder, using pooled scratch buffers if pooling is enabled.
+     * 
+     * @param builder
+     *            The string builder.
+     * @param bundle
+     *            The bundle or null if it cannot be found.
+     */
+    private void formatTo(StringBuilder builder, Bundle bundle) {
+        if (pooling) {
+            Scratch scratch = Scratch.acquire();
+            try {
+                formatTo(builder, bundle, scratch);
+            } finally {
+                scratch.release();
+            }
+        } else {
+            formatTo(builder, bundle, null);
         }
-        return bundlePath;
     }
 
     /**
-     * Generate the formatted message.
+     * Write the message formatted with the given bundle to the given string
+     * builder, using the given scratch buffers for the format arguments if
+     * they are not null.
+     * 
+     * @param builder
+     *            The string builder.
+     * @param bundle
+     *            The bundle or null if it cannot be found.
+     * @param scratch
+     *            The scratch buffers or null to allocate the format
+     *            arguments.
      */
-    public String toString() {
+    private void formatTo(StringBuilder builder, Bundle bundle, Scratch scratch) {
         String key = messageKey;
-        String bundlePath = getBundlePath(context, bundleName);
-        if (bundlePath.equals("com.goodworkalan.verbiage.package")) {
-            return message("defaultPackage", context, key);
-        }
         if (bundle == null) {
-            return message("missingBundle", bundlePath, key);
+            if (context.lastIndexOf('.') == -1) {
+                message(builder, "defaultPackage", context, key);
+            } else {
+                message(builder, "missingBundle", getBundlePath(context, bundleName), key);
+            }
+            return;
         }
-        String format;
-        try {
-            format = bundle.getString(key);
-        } catch (MissingResourceException e) {
-            return message("missingKey", key, bundlePath);
+        String bundlePath = bundle.getBundlePath();
+        CompiledTemplate template = bundle.getTemplate(key);
+        if (template == null) {
+            message(builder, "missingKey", key, bundlePath);
+            return;
         }
-        format = format.trim();
-        if (format.length() == 0) {
-            return message("blankMessage", key, bundlePath);
+        if (template.isBlank()) {
+            message(builder, "blankMessage", key, bundlePath);
+            return;
         }
-        int tilde = format.indexOf("~");
-        if (tilde == -1) {
-            return format;
+        if (template.isLiteral()) {
+            builder.append(template.getFormat());
+            return;
         }
-        String paths = format.substring(0, tilde);
-        format = format.substring(tilde + 1);
-        int length = 0, index = 0;
-        for (;;) {
-            length++;
-            index = paths.indexOf(',', index);
-            if (index == -1) {
-                break;
-            }
-            index += 1;
+        format(builder, bundle, template, variables, positioned, selected, key, scratch);
+    }
+
+    /**
+     * Get the bundle for the context and bundle name of this message,
+     * resolving the bundle on first use, since many messages are never
+     * rendered. The bundle path is only generated when the bundle is resolved.
+     * 
+     * @return The bundle or null if the context is in the default package or
+     *         the resource bundle cannot be loaded.
+     */
+    private Bundle getBundle() {
+        Bundle bundle = this.bundle;
+        if (bundle == null && context.lastIndexOf('.') != -1) {
+            bundle = BundleCache.getBundle(classLoader, getBundlePath(context, bundleName), locale);
+            this.bundle = bundle;
+        }
+        return bundle;
+    }
+
+    /**
+     * Get the bundle for the context and bundle name of this message in the
+     * given locale. The bundle is taken from the bundle cache unless the
+     * locale is the locale of this message.
+     * <p>
+     * If the values of this message were selected by the template of the
+     * locale of this message, as they are for a snapshot or a message read
+     * from its compact form, and the template in the given locale selects a
+     * path that was not selected, the bundle of the locale of this message is
+     * returned instead, so that the message is rendered in the locale in which
+     * it was written rather than reporting a missing argument.
+     * 
+     * @param locale
+     *            The locale.
+     * @return The bundle or null if the context is in the default package or
+     *         the resource bundle cannot be loaded.
+     */
+    private Bundle getBundle(Locale locale) {
+        if (locale.equals(this.locale)) {
+            return getBundle();
+        }
+        if (context.lastIndexOf('.') == -1) {
+            return null;
+        }
+        Bundle bundle = BundleCache.getBundle(classLoader, getBundlePath(context, bundleName), locale);
+        if (selected && bundle != null && !isSelected(bundle.getTemplate(messageKey))) {
+            return getBundle();
         }
-        Object[] arguments = new Object[length];
-        int start = -1, end, stop = paths.length(), position = 0;
-        while (start != stop) {
-            start++;
-            end = paths.indexOf(',', start);
-            if (end == -1) {
-                end = stop;
+        return bundle;
+    }
+
+    /**
+     * Whether every path of the given compiled template was selected into the
+     * values of this message.
+     * 
+     * @param template
+     *            The compiled template or null if the message key cannot be
+     *            found.
+     * @return True if the template selects no path that was not selected.
+     */
+    private boolean isSelected(CompiledTemplate template) {
+        if (template != null && !template.isLiteral()) {
+            for (String path : template.getPaths()) {
+                if (path != null && !variables.containsKey(path)) {
+                    return false;
+                }
             }
-            String name = paths.substring(start, end);
-            start = end;
-            if (name.equals("$@")) {
-                List<Object> positioned = new ArrayList<Object>();
-                Map<?, ?> map = variables;
-                for (int i = 1; map.containsKey("$" + i); i++) {
-                    positioned.add(convertClasses(map.get("$" + i)));
+        }
+        return true;
+    }
+
+    /**
+     * Get the compiled template of this message.
+     * 
+     * @return The compiled template or null if the bundle or message key
+     *         cannot be found or the message is blank.
+     */
+    CompiledTemplate getTemplate() {
+        Bundle bundle = getBundle();
+        if (bundle == null) {
+            return null;
+        }
+        CompiledTemplate template = bundle.getTemplate(messageKey);
+        return template == null || template.isBlank() ? null : template;
+    }
+
+    /**
+     * Get the resolved bundle of this message.
+     * 
+     * @return The bundle or null if the bundle has not been resolved or
+     *         cannot be found.
+     */
+    Bundle getResolvedBundle() {
+        return bundle;
+    }
+
+    /**
+     * Select the format arguments of the given compiled template of this
+     * message from the variables and positioned arguments of this message
+     * into the given argument list.
+     * 
+     * @param template
+     *            The compiled template.
+     * @param arguments
+     *            The argument list.
+     * @return True if every path of the template was found.
+     */
+    boolean select(CompiledTemplate template, Arguments arguments) {
+        return template.isLiteral() || select(template, variables, positioned, selected, arguments) == -1;
+    }
+
+    /**
+     * Select the format arguments of the given compiled template from the
+     * given variables and positioned arguments into the given argument list,
+     * stopping at the first path that is invalid or cannot be found.
+     * 
+     * @param template
+     *            The compiled template.
+     * @param variables
+     *            The map of variables.
+     * @param positioned
+     *            The positioned arguments or null if the positioned arguments
+     *            are named in the map of variables.
+     * @param selected
+     *            Whether the map of variables maps the paths selected by the
+     *            message template to their values.
+     * @param arguments
+     *            The argument list.
+     * @return The index of the path that is invalid or cannot be found or -1
+     *         if every path was found.
+     */
+    private static int select(CompiledTemplate template, Map<?, ?> variables, Arguments positioned, boolean selected, Arguments arguments) {
+        String[] paths = template.getPaths();
+        PathExpression[] expressions = template.getExpressions();
+        int count = template.getExpansions() == 0 ? 0 : getExpansionCount(variables, positioned);
+        for (int i = 0; i < paths.length; i++) {
+            if (paths[i] == null) {
+                for (int j = 0; j < count; j++) {
+                    if (positioned == null) {
+                        arguments.add(variables.get("$" + (j + 1)));
+                    } else {
+                        bind(arguments, positioned, j);
+                    }
                 }
-                Object[] resized = new Object[arguments.length + positioned.size() - 1];
-                System.arraycopy(arguments, 0, resized, 0, position);
-                arguments = resized;
-                for (int i = 0; i < positioned.size(); i++) {
-                    arguments[position++] = positioned.get(i);
+            } else if (expressions[i] == null) {
+                return i;
+            } else if (selected) {
+                if (!variables.containsKey(paths[i])) {
+                    return i;
                 }
+                arguments.add(variables.get(paths[i]));
+            } else if (positioned != null && expressions[i].getArgument() != -1 && expressions[i].getArgument() < positioned.size()) {
+                bind(arguments, positioned, expressions[i].getArgument());
             } else {
-                Object argument = "";
-                try {
-                    argument = convertClasses(getValue(name));
-                } catch (IllegalArgumentException e) {
-                    return message("badFormatArgument", name, key, bundlePath);
-                } catch (NoSuchElementException e) {
-                    return message("missingArgument", name, key, bundlePath);
+                Object argument = expressions[i].evaluate(variables, positioned, arguments);
+                if (argument == PathExpression.INVALID || argument == PathExpression.MISSING) {
+                    return i;
+                }
+                if (argument != PathExpression.BOUND) {
+                    arguments.add(argument);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the number of positioned arguments that the <code>$@</code>
+     * parameter expands to, which is the number of given positioned arguments
+     * or, if there are none, the number of consecutive positioned argument
+     * names in the given map of variables.
+     * 
+     * @param variables
+     *            The map of variables.
+     * @param positioned
+     *            The positioned arguments or null if the positioned arguments
+     *            are named in the map of variables.
+     * @return The number of positioned arguments.
+     */
+    private static int getExpansionCount(Map<?, ?> variables, Arguments positioned) {
+        if (positioned != null) {
+            return positioned.size();
+        }
+        int count = 0;
+        while (variables.containsKey("$" + (count + 1))) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Select the values of the paths of the message template of this message,
+     * mapping each path to its value, and mapping the positioned argument
+     * names <code>$1</code>, <code>$2</code> and so on to the positioned
+     * arguments if the template expands <code>$@</code>. Paths that cannot be
+     * found are not mapped. If the message template cannot be found, no paths
+     * are selected.
+     * 
+     * @return A map of the selected paths to their values.
+     */
+    Map<String, Object> selectValues() {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        CompiledTemplate template = getTemplate();
+        if (template == null || template.isLiteral()) {
+            return values;
+        }
+        String[] paths = template.getPaths();
+        PathExpression[] expressions = template.getExpressions();
+        for (int i = 0; i < paths.length; i++) {
+            if (paths[i] == null) {
+                for (int j = 0, stop = getExpansionCount(variables, positioned); j < stop; j++) {
+                    String name = "$" + (j + 1);
+                    values.put(name, positioned == null ? variables.get(name) : positioned.get(j));
+                }
+            } else if (selected) {
+                if (variables.containsKey(paths[i])) {
+                    values.put(paths[i], variables.get(paths[i]));
                 }
-                arguments[position++] = argument;
+            } else if (expressions[i] != null) {
+                Object value = expressions[i].evaluate(variables, positioned);
+                if (value != PathExpression.MISSING && value != PathExpression.INVALID) {
+                    values.put(paths[i], value);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Create a snapshot of this message that evaluates the paths of the
+     * message template now and keeps only their values, instead of the map of
+     * variables. The snapshot renders the same text as this message, even if
+     * the map of variables is changed afterward, and it does not retain the
+     * rest of the map of variables, so it can be handed to another thread to
+     * render. The selected values themselves are not copied.
+     *
+     * @return An immutable snapshot of this message.
+     */
+    public Message snapshot() {
+        if (selected) {
+            return this;
+        }
+        Message snapshot = new Message(context, bundleName, messageKey, Collections.unmodifiableMap(selectValues()), null, true, classLoader, locale);
+        snapshot.bundle = bundle;
+        return snapshot;
+    }
+
+    /**
+     * Write the compact form of this message to the given output. The compact
+     * form contains the context, bundle name, message key and locale of the
+     * message and the values of the paths selected by the message template,
+     * but not the rest of the map of variables. Integers, longs, doubles and
+     * the other primitive wrappers, strings, big integers and big decimals
+     * are written as binary values. Any other value is written as an object
+     * if the output is an object output and the value is serializable,
+     * otherwise it is written as its string value.
+     * 
+     * @param out
+     *            The output.
+     * @exception IOException
+     *                If an I/O error occurs.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        SerializedMessage.write(out, context, bundleName, messageKey, locale, selectValues());
+    }
+
+    /**
+     * Read a message from its compact form. The message bundle is loaded with
+     * the context class loader of the current thread in the locale of the
+     * message that was written. The paths of the message template are
+     * evaluated against the values that were selected when the message was
+     * written.
+     * 
+     * @param in
+     *            The input.
+     * @return The message.
+     * @exception IOException
+     *                If an I/O error occurs or the compact form is invalid.
+     */
+    public static Message readFrom(DataInput in) throws IOException {
+        return SerializedMessage.read(in);
+    }
+
+    /**
+     * Replace this message with its compact form when it is serialized. The
+     * compact form is read back as a plain message, not as an instance of a
+     * subclass of message. A subclass that must be read back as itself
+     * overrides this method.
+     * 
+     * @return The serialized form of this message.
+     */
+    protected Object writeReplace() {
+        return new SerializedMessage(this);
+    }
+
+    /**
+     * Messages are always serialized in their compact form.
+     * 
+     * @param in
+     *            The object input stream.
+     * @exception InvalidObjectException
+     *                Always.
+     */
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("Compact form required.");
+    }
+
+    /**
+     * Write the message formatted with the given compiled template to the
+     * given string builder, selecting the arguments from the given variables
+     * and positioned arguments. If the message cannot be formatted, the meta
+     * error message is written instead, or if the message is itself a meta
+     * error message, the meta error message key is written.
+     * 
+     * @param builder
+     *            The string builder.
+     * @param bundle
+     *            The bundle of the compiled template.
+     * @param template
+     *            The compiled template.
+     * @param variables
+     *            The map of variables.
+     * @param positioned
+     *            The positioned arguments or null if the positioned arguments
+     *            are named in the map of variables.
+     * @param selected
+     *            Whether the map of variables maps the paths selected by the
+     *            message template to their values.
+     * @param key
+     *            The message key or null if the message is a meta error
+     *            message.
+     * @param scratch
+     *            The scratch buffers or null to allocate the format
+     *            arguments.
+     */
+    private static void format(StringBuilder builder, Bundle bundle, CompiledTemplate template, Map<?, ?> variables, Arguments positioned, boolean selected, String key, Scratch scratch) {
+        Arguments arguments = scratch == null ? new Arguments(template.getPaths().length + (positioned == null ? 0 : positioned.size() * template.getExpansions())) : scratch.getArguments();
+        int failed = select(template, variables, positioned, selected, arguments);
+        if (failed != -1) {
+            PathExpression expression = template.getExpressions()[failed];
+            if (expression == null || (!selected && expression.evaluate(variables, positioned) == PathExpression.INVALID)) {
+                error(builder, key, "badFormatArgument", template.getPaths()[failed], key, bundle.getBundlePath());
+            } else {
+                error(builder, key, "missingArgument", template.getPaths()[failed], key, bundle.getBundlePath());
             }
+            return;
         }
+        format(builder, bundle, template, arguments, key);
+    }
+
+    /**
+     * Write the given selected format arguments formatted with the given
+     * compiled template to the given string builder. If the message cannot be
+     * formatted, the meta error message is written instead, or if the message
+     * is itself a meta error message, the meta error message key is written.
+     * 
+     * @param builder
+     *            The string builder.
+     * @param bundle
+     *            The bundle of the compiled template, whose locale and
+     *            number formatting symbols are used to format the message.
+     * @param template
+     *            The compiled template.
+     * @param arguments
+     *            The selected format arguments.
+     * @param key
+     *            The message key or null if the message is a meta error
+     *            message.
+     */
+    static void format(StringBuilder builder, Bundle bundle, CompiledTemplate template, Arguments arguments, String key) {
+        format(builder, template, arguments, key, bundle.getBundlePath(), bundle.getLocale(), bundle.getSymbols());
+    }
+
+    /**
+     * Write the given selected format arguments formatted with the given
+     * compiled template in the given locale to the given string builder. If
+     * the message cannot be formatted, the meta error message is written
+     * instead, or if the message is itself a meta error message, the meta
+     * error message key is written.
+     * 
+     * @param builder
+     *            The string builder.
+     * @param template
+     *            The compiled template.
+     * @param arguments
+     *            The selected format arguments.
+     * @param key
+     *            The message key or null if the message is a meta error
+     *            message.
+     * @param bundlePath
+     *            The bundle path.
+     * @param locale
+     *            The locale used to format the message.
+     * @param symbols
+     *            The number formatting symbols of the locale.
+     */
+    static void format(StringBuilder builder, CompiledTemplate template, Arguments arguments, String key, String bundlePath, Locale locale, Symbols symbols) {
+        if (template.isLiteral()) {
+            builder.append(template.getFormat());
+            return;
+        }
+        int start = builder.length();
         try {
-            return String.format(format, arguments);
+            template.format(builder, locale, symbols, arguments);
         } catch (RuntimeException e) {
-            return message("formatException", e.getMessage(), key, bundlePath);
+            builder.setLength(start);
+            error(builder, key, "formatException", e.getMessage(), key, bundlePath);
+        }
+    }
+
+    /**
+     * Add the positioned argument at the given index to the given format
+     * arguments, without boxing it if it is a primitive.
+     * 
+     * @param arguments
+     *            The format arguments.
+     * @param positioned
+     *            The positioned arguments.
+     * @param index
+     *            The index of the positioned argument.
+     */
+    private static void bind(Arguments arguments, Arguments positioned, int index) {
+        if (positioned.getType(index) == Arguments.OBJECT) {
+            arguments.add(positioned.get(index));
+        } else {
+            arguments.addPrimitive(positioned, index);
         }
     }
 
+    /**
+     * Write the formatted message to the given appendable. If the appendable
+     * is a string builder, the message is written directly to the string
+     * builder, otherwise the message is formatted and then appended, so that
+     * a message that fails to format does not leave partial output.
+     * 
+     * @param appendable
+     *            The appendable.
+     * @exception IOException
+     *                If an I/O error occurs.
+     */
+    public void formatTo(Appendable appendable) throws IOException {
+        if (appendable instanceof StringBuilder) {
+            formatTo((StringBuilder) appendable);
+        } else if (pooling) {
+            Scratch scratch = Scratch.acquire();
+            try {
+                formatTo(scratch.getBuilder(), getBundle(), scratch);
+                appendable.append(scratch.getBuilder());
+            } finally {
+                scratch.release();
+            }
+        } else {
+            StringBuilder builder = new StringBuilder();
+            formatTo(builder, getBundle(), null);
+            appendable.append(builder);
+        }
+    }
+
+    /**
+     * Generate the formatted message. If pooling is enabled, the message is
+     * formatted into a pooled string builder, so that the only allocation is
+     * the returned string.
+     */
+    public String toString() {
+        return toString(getBundle());
+    }
+
+    /**
+     * Generate the message formatted in the given locale. The message
+     * template is read from the bundle for the given locale, so that the
+     * same message can be rendered in the locale of each reader.
+     * 
+     * @param locale
+     *            The locale.
+     * @return The formatted message.
+     */
+    public String toString(Locale locale) {
+        return toString(getBundle(locale));
+    }
+
+    /**
+     * Generate the message formatted with the given bundle, using a pooled
+     * string builder if pooling is enabled.
+     * 
+     * @param bundle
+     *            The bundle or null if it cannot be found.
+     * @return The formatted message.
+     */
+    private String toString(Bundle bundle) {
+        if (pooling) {
+            Scratch scratch = Scratch.acquire();
+            try {
+                formatTo(scratch.getBuilder(), bundle, scratch);
+                return scratch.getBuilder().toString();
+            } finally {
+                scratch.release();
+            }
+        }
+        StringBuilder builder = new StringBuilder();
+        formatTo(builder, bundle, null);
+        return builder.toString();
+    }
+
 	/**
-	 * Generate a meta error message.
+	 * Write a meta error message to the given string builder. The meta error
+	 * message templates are compiled once and formatted with the given
+	 * arguments as positioned arguments, without creating a message.
 	 * 
+	 * @param builder
+	 *            The string builder.
 	 * @param key
 	 *            The meta error message key.
-	 * @param variables
+	 * @param arguments
 	 *            The message format arguments.
-	 * @return The meta error message.
 	 */
-    private String message(String key, Object...variables) {
-        return new Message("com.goodworkalan.verbiage.Message", "missing", key, position(new HashMap<Object, Object>(), variables)).toString();
+    static void message(StringBuilder builder, String key, Object...arguments) {
+        Bundle bundle = BundleCache.getBundle(Message.class.getClassLoader(), META_BUNDLE_PATH, Locale.getDefault());
+        CompiledTemplate template = bundle.getTemplate(key);
+        if (template.isLiteral()) {
+            builder.append(template.getFormat());
+        } else {
+            format(builder, bundle, template, Collections.emptyMap(), new Arguments(arguments), false, null, null);
+        }
+    }
+
+    /**
+     * Write a meta error message to the given string builder for an error
+     * that occurred while formatting the message with the given key. If the
+     * message key is null, the error occurred while formatting a meta error
+     * message, so the meta error message key is written instead of
+     * formatting another meta error message.
+     * 
+     * @param builder
+     *            The string builder.
+     * @param messageKey
+     *            The key of the message that failed or null for a meta error
+     *            message.
+     * @param key
+     *            The meta error message key.
+     * @param arguments
+     *            The message format arguments.
+     */
+    private static void error(StringBuilder builder, String messageKey, String key, Object...arguments) {
+        if (messageKey == null) {
+            builder.append(key);
+        } else {
+            message(builder, key, arguments);
+        }
     }
 }
@@ -0,0 +1,171 @@
+package com.goodworkalan.verbiage;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds a message from a map of named variables and a list of positioned
+ * arguments. Integer, long and double positioned arguments are stored without
+ * boxing, and when a message format selects them with a positioned argument
+ * name such as <code>$1</code> or with <code>$@</code>, they are written by
+ * the <code>%d</code>, <code>%x</code> and <code>%f</code> conversions without
+ * boxing.
+ * <p>
+ * If no positioned arguments are added, the positioned argument names
+ * <code>$1</code>, <code>$2</code> and so on are read from the map of
+ * variables. If any positioned arguments are added, they replace the
+ * positioned argument names in the map of variables, which are ignored.
+ * <p>
+ * A builder can be reused, each call to <code>build</code> creates a message
+ * with the positioned arguments added since the last call to
+ * <code>build</code>.
+ *
+ * @author Alan Gutierrez
+ */
+public class MessageBuilder {
+    /** The message bundle context. */
+    private final String context;
+
+    /** The message bundle file name. */
+    private final String bundleName;
+
+    /** The message key. */
+    private final String messageKey;
+
+    /** The map of variables or null for no named variables. */
+    private Map<?, ?> variables;
+
+    /** The positioned arguments or null if none have been added. */
+    private Arguments positioned;
+
+    /** The locale used to load the resource bundle and format the message. */
+    private Locale locale = Locale.getDefault();
+
+    /**
+     * Create a message builder.
+     *
+     * @param context
+     *            The message bundle context.
+     * @param bundleName
+     *            The message bundle file name.
+     * @param messageKey
+     *            The message key.
+     */
+    public MessageBuilder(String context, String bundleName, String messageKey) {
+        this.context = context;
+        this.bundleName = bundleName;
+        this.messageKey = messageKey;
+    }
+
+    /**
+     * Set the map of named variables.
+     *
+     * @param variables
+     *            The map of variables.
+     * @return This builder.
+     */
+    public MessageBuilder variables(Map<?, ?> variables) {
+        this.variables = variables;
+        return this;
+    }
+
+    /**
+     * Set the locale used to load the resource bundle and format the message.
+     * The default locale is used if no locale is set.
+     *
+     * @param locale
+     *            The locale.
+     * @return This builder.
+     */
+    public MessageBuilder locale(Locale locale) {
+        this.locale = locale;
+        return this;
+    }
+
+    /**
+     * Get the positioned arguments, creating them if none have been added.
+     *
+     * @return The positioned arguments.
+     */
+    private Arguments getPositioned() {
+        if (positioned == null) {
+            positioned = new Arguments(4);
+        }
+        return positioned;
+    }
+
+    /**
+     * Add a positioned integer argument.
+     *
+     * @param value
+     *            The argument.
+     * @return This builder.
+     */
+    public MessageBuilder arg(int value) {
+        getPositioned().add(value);
+        return this;
+    }
+
+    /**
+     * Add a positioned long argument.
+     *
+     * @param value
+     *            The argument.
+     * @return This builder.
+     */
+    public MessageBuilder arg(long value) {
+        getPositioned().add(value);
+        return this;
+    }
+
+    /**
+     * Add a positioned double argument. Floats are widened to doubles.
+     *
+     * @param value
+     *            The argument.
+     * @return This builder.
+     */
+    public MessageBuilder arg(double value) {
+        getPositioned().add(value);
+        return this;
+    }
+
+    /**
+     * Add a positioned character argument. The character is boxed so that it
+     * is not widened to an integer and written as its character code.
+     *
+     * @param value
+     *            The argument.
+     * @return This builder.
+     */
+    public MessageBuilder arg(char value) {
+        getPositioned().add(Character.valueOf(value));
+        return this;
+    }
+
+    /**
+     * Add a positioned object argument.
+     *
+     * @param value
+     *            The argument.
+     * @return This builder.
+     */
+    public MessageBuilder arg(Object value) {
+        getPositioned().add(value);
+        return this;
+    }
+
+    /**
+     * Create a message with the variables and positioned arguments of this
+     * builder. If no positioned arguments have been added, the positioned
+     * arguments are named in the map of variables.
+     *
+     * @return A message.
+     */
+    public Message build() {
+        Arguments positioned = this.positioned;
+        this.positioned = null;
+        return new Message(context, bundleName, messageKey, variables == null ? Collections.emptyMap() : variables, positioned, false, Thread.currentThread().getContextClassLoader(), locale);
+    }
+}
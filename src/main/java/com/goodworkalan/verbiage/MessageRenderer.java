@@ -0,0 +1,461 @@
+package com.goodworkalan.verbiage;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders messages in worker threads, so that the threads that create
+ * messages do not pay for rendering them. Messages are submitted with the
+ * sink to which they are written, queued in a bounded queue and rendered by
+ * workers run by an executor. A worker takes as many messages as are queued,
+ * up to the batch size, and writes the consecutive messages of the batch that
+ * share a sink to the sink at once.
+ * <p>
+ * A message is replaced by its snapshot when it is submitted, so that the
+ * values of the message are selected by the submitting thread, and the map of
+ * variables can be changed or collected once the message is submitted.
+ * <p>
+ * When the queue is full, the overflow policy of the renderer decides whether
+ * the submitting thread waits for room in the queue, discards the message or
+ * renders the message itself. Messages written to a sink by a single worker
+ * are written in the order they were submitted. With more than one worker,
+ * messages written to the same sink can be reordered.
+ * <p>
+ * When the renderer is shut down, the workers render the queued messages and
+ * stop once they find the queue empty. No thread waits to put anything into a
+ * full queue during shut down, so a shut down cannot wait on the submitting
+ * threads, and the messages of any submitting thread that was already past
+ * the shut down check are rendered by the shutting down thread.
+ *
+ * @author Alan Gutierrez
+ */
+public class MessageRenderer {
+    /**
+     * The number of milliseconds a worker waits for a message before it
+     * checks whether the renderer has been shut down.
+     */
+    private final static long POLL_MILLISECONDS = 100;
+
+    /** The line separator. */
+    private final static String SEPARATOR = System.getProperty("line.separator");
+
+    /** The queue of messages to render. */
+    private final BlockingQueue<Entry> queue;
+
+    /** The capacity of the queue. */
+    private final int capacity;
+
+    /** The maximum number of messages taken from the queue at once. */
+    private final int batchSize;
+
+    /** What to do with a message submitted when the queue is full. */
+    private final OverflowPolicy policy;
+
+    /** Counted down as each worker stops. */
+    private final CountDownLatch stopped;
+
+    /** The number of messages submitted. */
+    private final AtomicLong submitted = new AtomicLong();
+
+    /** The number of messages rendered by workers. */
+    private final AtomicLong rendered = new AtomicLong();
+
+    /** The number of messages discarded because the queue was full. */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * The number of messages rendered by the submitting thread because the
+     * queue was full.
+     */
+    private final AtomicLong inlined = new AtomicLong();
+
+    /** The number of times a submitting thread waited for the queue. */
+    private final AtomicLong blocked = new AtomicLong();
+
+    /** The number of batches that a sink failed to write. */
+    private final AtomicLong failed = new AtomicLong();
+
+    /** The greatest number of messages that were queued at once. */
+    private final AtomicLong maximumQueueDepth = new AtomicLong();
+
+    /** Whether the renderer has been shut down. */
+    private volatile boolean shutdown;
+
+    /**
+     * The number of threads that have passed the shut down check of
+     * <code>submit</code> and have not yet returned.
+     */
+    private final AtomicInteger submitting = new AtomicInteger();
+
+    /**
+     * Create a renderer that runs the given number of workers with the given
+     * executor. The executor must be able to run every worker at once, since
+     * each worker runs until the renderer is shut down.
+     *
+     * @param executor
+     *            The executor.
+     * @param workers
+     *            The number of workers.
+     * @param capacity
+     *            The capacity of the queue.
+     * @param batchSize
+     *            The maximum number of messages a worker takes from the queue
+     *            at once.
+     * @param policy
+     *            What to do with a message submitted when the queue is full.
+     * @exception IllegalArgumentException
+     *                If the number of workers, the capacity or the batch size
+     *                is less than one.
+     */
+    public MessageRenderer(Executor executor, int workers, int capacity, int batchSize, OverflowPolicy policy) {
+        if (workers < 1 || capacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.queue = new ArrayBlockingQueue<Entry>(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.policy = policy;
+        this.stopped = new CountDownLatch(workers);
+        for (int i = 0; i < workers; i++) {
+            executor.execute(new Worker());
+        }
+    }
+
+    /**
+     * Create a sink that writes to the given writer and flushes it after
+     * each batch.
+     *
+     * @param writer
+     *            The writer.
+     * @return A sink.
+     */
+    public static MessageSink toWriter(final Writer writer) {
+        return new MessageSink() {
+            public void write(CharSequence text) throws IOException {
+                synchronized (writer) {
+                    writer.append(text);
+                    writer.flush();
+                }
+            }
+        };
+    }
+
+    /**
+     * Create a sink that writes to the given channel, encoding each batch in
+     * the given character set.
+     *
+     * @param channel
+     *            The channel.
+     * @param charset
+     *            The character set.
+     * @return A sink.
+     */
+    public static MessageSink toChannel(final WritableByteChannel channel, final Charset charset) {
+        return new MessageSink() {
+            public void write(CharSequence text) throws IOException {
+                ByteBuffer bytes = charset.encode(CharBuffer.wrap(text));
+                synchronized (channel) {
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Submit a snapshot of the given message to be rendered and written to
+     * the given sink. If the queue is full, the message is handled according
+     * to the overflow policy. If the thread is interrupted while it waits for
+     * room in the queue, the message is discarded and the thread is
+     * interrupted again.
+     *
+     * @param message
+     *            The message.
+     * @param sink
+     *            The sink.
+     * @return True if the message was queued or rendered, false if it was
+     *         discarded.
+     * @exception IllegalStateException
+     *                If the renderer has been shut down.
+     */
+    public boolean submit(Message message, MessageSink sink) {
+        submitting.incrementAndGet();
+        try {
+            if (shutdown) {
+                throw new IllegalStateException();
+            }
+            return enqueue(message, sink);
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Queue a snapshot of the given message to be rendered and written to the
+     * given sink, handling a full queue according to the overflow policy.
+     *
+     * @param message
+     *            The message.
+     * @param sink
+     *            The sink.
+     * @return True if the message was queued or rendered, false if it was
+     *         discarded.
+     */
+    private boolean enqueue(Message message, MessageSink sink) {
+        submitted.incrementAndGet();
+        Entry entry = new Entry(message.snapshot(), sink);
+        if (!queue.offer(entry)) {
+            switch (policy) {
+            case DROP:
+                dropped.incrementAndGet();
+                return false;
+            case INLINE:
+                inlined.incrementAndGet();
+                List<Entry> batch = new ArrayList<Entry>(1);
+                batch.add(entry);
+                render(batch, new StringBuilder());
+                return true;
+            default:
+                blocked.incrementAndGet();
+                try {
+                    queue.put(entry);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                    return false;
+                }
+            }
+        }
+        int depth = queue.size();
+        long maximum;
+        while (depth > (maximum = maximumQueueDepth.get()) && !maximumQueueDepth.compareAndSet(maximum, depth)) {
+        }
+        return true;
+    }
+
+    /**
+     * Render the messages of the given batch and write them to their sinks,
+     * writing consecutive messages that share a sink at once.
+     *
+     * @param batch
+     *            The batch of queue entries.
+     * @param builder
+     *            A string builder to reuse.
+     */
+    private void render(List<Entry> batch, StringBuilder builder) {
+        MessageSink sink = null;
+        builder.setLength(0);
+        for (int i = 0, size = batch.size(); i < size; i++) {
+            Entry entry = batch.get(i);
+            if (sink != entry.sink) {
+                write(sink, builder);
+                sink = entry.sink;
+            }
+            entry.message.formatTo(builder);
+            builder.append(SEPARATOR);
+        }
+        write(sink, builder);
+    }
+
+    /**
+     * Write the rendered messages in the given string builder to the given
+     * sink and reset the string builder, counting the batch as failed if the
+     * sink raises an exception.
+     *
+     * @param sink
+     *            The sink or null if there is nothing to write.
+     * @param builder
+     *            The rendered messages.
+     */
+    private void write(MessageSink sink, StringBuilder builder) {
+        if (sink != null) {
+            try {
+                sink.write(builder);
+            } catch (IOException e) {
+                failed.incrementAndGet();
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+            }
+            builder.setLength(0);
+        }
+    }
+
+    /**
+     * Stop accepting messages, wait for the workers to render the queued
+     * messages and stop, then render any messages that are queued by threads
+     * that were submitting messages while the workers were stopping, until
+     * the queue is empty and no thread is submitting.
+     *
+     * @exception InterruptedException
+     *                If the thread is interrupted while it waits.
+     */
+    public void shutdown() throws InterruptedException {
+        shutdown = true;
+        stopped.await();
+        List<Entry> batch = new ArrayList<Entry>();
+        StringBuilder builder = new StringBuilder();
+        while (submitting.get() != 0 || !queue.isEmpty()) {
+            Entry entry = queue.poll(POLL_MILLISECONDS, TimeUnit.MILLISECONDS);
+            if (entry != null) {
+                batch.add(entry);
+                queue.drainTo(batch);
+                render(batch, builder);
+                rendered.addAndGet(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Get the number of messages in the queue.
+     *
+     * @return The queue depth.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Get the greatest number of messages that were queued at once.
+     *
+     * @return The maximum queue depth.
+     */
+    public long getMaximumQueueDepth() {
+        return maximumQueueDepth.get();
+    }
+
+    /**
+     * Get the capacity of the queue.
+     *
+     * @return The queue capacity.
+     */
+    public int getQueueCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of messages submitted.
+     *
+     * @return The number of messages submitted.
+     */
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    /**
+     * Get the number of messages rendered by the workers.
+     *
+     * @return The number of messages rendered by the workers.
+     */
+    public long getRendered() {
+        return rendered.get();
+    }
+
+    /**
+     * Get the number of messages discarded because the queue was full.
+     *
+     * @return The number of messages discarded.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Get the number of messages rendered by the submitting thread because
+     * the queue was full.
+     *
+     * @return The number of messages rendered inline.
+     */
+    public long getInlined() {
+        return inlined.get();
+    }
+
+    /**
+     * Get the number of times a submitting thread waited for room in the
+     * queue.
+     *
+     * @return The number of times a submitting thread waited.
+     */
+    public long getBlocked() {
+        return blocked.get();
+    }
+
+    /**
+     * Get the number of batches that a sink failed to write.
+     *
+     * @return The number of failed batches.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * A message and the sink to which it is written.
+     */
+    private final static class Entry {
+        /** The message snapshot. */
+        public final Message message;
+
+        /** The sink. */
+        public final MessageSink sink;
+
+        /**
+         * Create a queue entry.
+         *
+         * @param message
+         *            The message snapshot.
+         * @param sink
+         *            The sink.
+         */
+        public Entry(Message message, MessageSink sink) {
+            this.message = message;
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * Takes batches of messages from the queue and renders them until it
+     * finds the queue empty after the renderer has been shut down.
+     */
+    private final class Worker implements Runnable {
+        /** Render batches until the renderer is shut down. */
+        public void run() {
+            List<Entry> batch = new ArrayList<Entry>(batchSize);
+            StringBuilder builder = new StringBuilder();
+            try {
+                for (;;) {
+                    Entry entry = queue.poll(POLL_MILLISECONDS, TimeUnit.MILLISECONDS);
+                    if (entry == null) {
+                        if (shutdown) {
+                            break;
+                        }
+                    } else {
+                        batch.add(entry);
+                        queue.drainTo(batch, batchSize - 1);
+                        render(batch, builder);
+                        rendered.addAndGet(batch.size());
+                        batch.clear();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                stopped.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.goodworkalan.verbiage;
+
+import java.io.IOException;
+
+/**
+ * A destination for messages rendered by a <code>MessageRenderer</code>.
+ * <p>
+ * A sink is given the text of a batch of one or more messages, each message
+ * followed by a line separator. A sink shared by more than one worker of a
+ * renderer can be called by more than one thread at once.
+ *
+ * @author Alan Gutierrez
+ */
+public interface MessageSink {
+    /**
+     * Write the text of a batch of rendered messages.
+     *
+     * @param text
+     *            The rendered messages, each followed by a line separator.
+     * @exception IOException
+     *                If an I/O error occurs.
+     */
+    public void write(CharSequence text) throws IOException;
+}
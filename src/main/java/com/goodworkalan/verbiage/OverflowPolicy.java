@@ -0,0 +1,18 @@
+package com.goodworkalan.verbiage;
+
+/**
+ * What a <code>MessageRenderer</code> does with a message submitted when its
+ * queue is full.
+ *
+ * @author Alan Gutierrez
+ */
+public enum OverflowPolicy {
+    /** Wait until there is room in the queue. */
+    BLOCK,
+
+    /** Discard the message. */
+    DROP,
+
+    /** Render the message in the submitting thread and write it to its sink. */
+    INLINE
+}
@@ -0,0 +1,434 @@
+package com.goodworkalan.verbiage;
+
+import java.lang.reflect.Array;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A dotted object path that is validated and split into its parts once so that
+ * it can be evaluated against a graph of maps, lists and arrays without
+ * parsing.
+ * <p>
+ * Each part of the path is either a Java identifier used to dereference a map
+ * or an integer index used to dereference a list or an array. The integer
+ * value of an index is parsed when the path is compiled. Arrays of primitives
+ * are dereferenced by accessors specialized for each primitive type.
+ * <p>
+ * If property accessors are enabled with <code>Message.setAccessors</code>,
+ * an identifier used to dereference any other object reads the bean property
+ * getter, record component or public field of that name.
+ *
+ * @author Alan Gutierrez
+ */
+public final class PathExpression {
+    /** The maximum number of path expressions kept in the cache. */
+    private final static int CACHE_SIZE = 1024;
+
+    /** The cache of path expressions used by <code>valueOf</code>. */
+    private final static ConcurrentMap<String, PathExpression> cache = new ConcurrentHashMap<String, PathExpression>();
+
+    /** The result of evaluating a path that does not exist. */
+    final static Object MISSING = new Object();
+
+    /** The result of evaluating a path that uses a list index on a map. */
+    final static Object INVALID = new Object();
+
+    /**
+     * The result of evaluating a path to an element of an array of integers,
+     * longs or doubles that was added to the format arguments without
+     * boxing.
+     */
+    final static Object BOUND = new Object();
+
+    /** The path. */
+    private final String path;
+
+    /** The path part names. */
+    private final String[] names;
+
+    /** The path part integer indexes or -1 if the part is not an index. */
+    private final int[] indexes;
+
+    /**
+     * The zero based index of the positioned argument named by the first path
+     * part, or -1 if the first part does not name a positioned argument.
+     */
+    private final int position;
+
+    /**
+     * Compile the given dotted object path.
+     *
+     * @param path
+     *            The path.
+     * @exception IllegalArgumentException
+     *                If any part of the given path is not a valid Java
+     *                identifier or list index.
+     */
+    public PathExpression(String path) {
+        int count = 1;
+        for (int i = 0, stop = path.length(); i < stop; i++) {
+            if (path.charAt(i) == '.') {
+                count++;
+            }
+        }
+        String[] names = new String[count];
+        int[] indexes = new int[count];
+        int start = -1, end, stop = path.length(), part = 0;
+        while (start != stop) {
+            start++;
+            end = path.indexOf('.', start);
+            if (end == -1) {
+                end = stop;
+            }
+            String name = path.substring(start, end);
+            start = end;
+            names[part] = name;
+            if (Indexes.checkJavaIdentifier(name)) {
+                indexes[part] = -1;
+            } else if (name.length() != 0 && Indexes.isInteger(name)) {
+                indexes[part] = Integer.parseInt(name, 10);
+            } else {
+                throw new IllegalArgumentException();
+            }
+            part++;
+        }
+        this.path = path;
+        this.names = names;
+        this.indexes = indexes;
+        this.position = getPosition(names[0]);
+    }
+
+    /**
+     * Get the zero based index of the positioned argument named by the given
+     * path part, which is a dollar sign followed by the one based position of
+     * the argument.
+     *
+     * @param name
+     *            The path part.
+     * @return The zero based positioned argument index or -1 if the name is
+     *         not a positioned argument name.
+     */
+    private static int getPosition(String name) {
+        if (name.length() < 2 || name.length() > 10 || name.charAt(0) != '$' || name.charAt(1) == '0') {
+            return -1;
+        }
+        for (int i = 1, stop = name.length(); i < stop; i++) {
+            char ch = name.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+        }
+        return Integer.parseInt(name.substring(1), 10) - 1;
+    }
+
+    /**
+     * Get the zero based index of the positioned argument if the path is only
+     * the name of a positioned argument, so that the argument can be bound
+     * without evaluating the path.
+     *
+     * @return The zero based positioned argument index or -1 if the path is
+     *         not only a positioned argument name.
+     */
+    int getArgument() {
+        return names.length == 1 ? position : -1;
+    }
+
+    /**
+     * Get a path expression for the given path from a cache of path
+     * expressions, compiling it if it has not already been compiled.
+     *
+     * @param path
+     *            The path.
+     * @return The compiled path expression.
+     * @exception IllegalArgumentException
+     *                If any part of the given path is not a valid Java
+     *                identifier or list index.
+     */
+    public static PathExpression valueOf(String path) {
+        PathExpression expression = cache.get(path);
+        if (expression == null) {
+            expression = new PathExpression(path);
+            if (cache.size() < CACHE_SIZE) {
+                cache.putIfAbsent(path, expression);
+            }
+        }
+        return expression;
+    }
+
+    /**
+     * Evaluate the path against the given object graph.
+     *
+     * @param root
+     *            The root of the object graph.
+     * @return The value found by navigating the path.
+     * @exception NoSuchElementException
+     *                If the path does not exist.
+     * @exception IllegalArgumentException
+     *                If a list index is used to dereference a map.
+     */
+    public Object getValue(Object root) {
+        return check(evaluate(root, 0, null));
+    }
+
+    /**
+     * Evaluate the path against the given object graph returning null if the
+     * path does not exist.
+     *
+     * @param root
+     *            The root of the object graph.
+     * @return The value found by navigating the path or null if the path does
+     *         not exist.
+     * @exception IllegalArgumentException
+     *                If a list index is used to dereference a map.
+     */
+    public Object get(Object root) {
+        return nullIfMissing(evaluate(root, 0, null));
+    }
+
+    /**
+     * Evaluate the path against the given variables, or if the first path
+     * part names a positioned argument and positioned arguments are given,
+     * against the positioned argument, returning null if the path does not
+     * exist.
+     *
+     * @param variables
+     *            The map of variables.
+     * @param positioned
+     *            The positioned arguments or null.
+     * @return The value found by navigating the path or null if the path does
+     *         not exist.
+     * @exception IllegalArgumentException
+     *                If a list index is used to dereference a map.
+     */
+    Object get(Map<?, ?> variables, Arguments positioned) {
+        return nullIfMissing(evaluate(variables, positioned));
+    }
+
+    /**
+     * Convert <code>MISSING</code> to null and raise an exception if the
+     * given evaluation result is <code>INVALID</code>.
+     *
+     * @param value
+     *            The evaluation result.
+     * @return The value or null if the value is <code>MISSING</code>.
+     * @exception IllegalArgumentException
+     *                If the value is <code>INVALID</code>.
+     */
+    private static Object nullIfMissing(Object value) {
+        if (value == MISSING) {
+            return null;
+        }
+        if (value == INVALID) {
+            throw new IllegalArgumentException();
+        }
+        return value;
+    }
+
+    /**
+     * Evaluate the path against the given variables, or if the first path
+     * part names a positioned argument and positioned arguments are given,
+     * against the positioned argument.
+     *
+     * @param variables
+     *            The map of variables.
+     * @param positioned
+     *            The positioned arguments or null.
+     * @return The value found by navigating the path.
+     * @exception NoSuchElementException
+     *                If the path does not exist.
+     * @exception IllegalArgumentException
+     *                If a list index is used to dereference a map.
+     */
+    Object getValue(Map<?, ?> variables, Arguments positioned) {
+        return check(evaluate(variables, positioned));
+    }
+
+    /**
+     * Evaluate the path against the given variables, or if the first path
+     * part names a positioned argument and positioned arguments are given,
+     * against the positioned argument. No exceptions are thrown, a path that
+     * does not exist evaluates to <code>MISSING</code> and a list index used
+     * to dereference a map evaluates to <code>INVALID</code>.
+     *
+     * @param variables
+     *            The map of variables.
+     * @param positioned
+     *            The positioned arguments or null.
+     * @return The value found by navigating the path, <code>MISSING</code>
+     *         or <code>INVALID</code>.
+     */
+    Object evaluate(Map<?, ?> variables, Arguments positioned) {
+        return evaluate(variables, positioned, null);
+    }
+
+    /**
+     * Evaluate the path against the given variables, or if the first path
+     * part names a positioned argument and positioned arguments are given,
+     * against the positioned argument. If the path ends with an index into an
+     * array of integers, longs or doubles, or with an integer, long or double
+     * property, and format arguments are given, the value is added to the
+     * format arguments without boxing and the result is <code>BOUND</code>.
+     *
+     * @param variables
+     *            The map of variables.
+     * @param positioned
+     *            The positioned arguments or null.
+     * @param arguments
+     *            The format arguments or null.
+     * @return The value found by navigating the path, <code>MISSING</code>,
+     *         <code>INVALID</code> or <code>BOUND</code>.
+     */
+    Object evaluate(Map<?, ?> variables, Arguments positioned, Arguments arguments) {
+        if (positioned != null && position != -1) {
+            if (position >= positioned.size()) {
+                return MISSING;
+            }
+            return evaluate(positioned.get(position), 1, arguments);
+        }
+        return evaluate(variables, 0, arguments);
+    }
+
+    /**
+     * Evaluate the path starting at the given path part against the given
+     * object without throwing exceptions.
+     *
+     * @param current
+     *            The object to dereference with the first path part.
+     * @param first
+     *            The index of the first path part.
+     * @param arguments
+     *            The format arguments to which to add a final element of a
+     *            primitive array or a final integer, long or double property
+     *            or null.
+     * @return The value found by navigating the path, <code>MISSING</code>,
+     *         <code>INVALID</code> or <code>BOUND</code>.
+     */
+    private Object evaluate(Object current, int first, Arguments arguments) {
+        for (int i = first, stop = names.length; i < stop; i++) {
+            int index = indexes[i];
+            if (current instanceof Map<?, ?>) {
+                if (index != -1) {
+                    return INVALID;
+                }
+                current = ((Map<?, ?>) current).get(names[i]);
+            } else if (current instanceof List<?>) {
+                List<?> list = (List<?>) current;
+                if (index == -1 || index >= list.size()) {
+                    return MISSING;
+                }
+                current = list.get(index);
+            } else if (current instanceof Object[]) {
+                Object[] array = (Object[]) current;
+                if (index == -1 || index >= array.length) {
+                    return MISSING;
+                }
+                current = array[index];
+            } else if (current != null && current.getClass().isArray()) {
+                if (index == -1 || index >= Array.getLength(current)) {
+                    return MISSING;
+                }
+                if (arguments != null && i == stop - 1 && bind(current, index, arguments)) {
+                    return BOUND;
+                }
+                current = get(current, index);
+            } else if (current != null && index == -1 && Accessors.enabled) {
+                current = Accessors.get(current, names[i], i == stop - 1 ? arguments : null);
+                if (current == MISSING || current == BOUND) {
+                    return current;
+                }
+            } else {
+                return MISSING;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Add the element at the given index of the given primitive array to the
+     * given format arguments without boxing it, if the array is an array of
+     * integers, longs or doubles.
+     *
+     * @param array
+     *            The primitive array.
+     * @param index
+     *            The index.
+     * @param arguments
+     *            The format arguments.
+     * @return True if the element was added.
+     */
+    private static boolean bind(Object array, int index, Arguments arguments) {
+        if (array instanceof int[]) {
+            arguments.add(((int[]) array)[index]);
+        } else if (array instanceof long[]) {
+            arguments.add(((long[]) array)[index]);
+        } else if (array instanceof double[]) {
+            arguments.add(((double[]) array)[index]);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the element at the given index of the given primitive array,
+     * boxing it.
+     *
+     * @param array
+     *            The primitive array.
+     * @param index
+     *            The index.
+     * @return The boxed element.
+     */
+    private static Object get(Object array, int index) {
+        if (array instanceof int[]) {
+            return ((int[]) array)[index];
+        } else if (array instanceof long[]) {
+            return ((long[]) array)[index];
+        } else if (array instanceof double[]) {
+            return ((double[]) array)[index];
+        } else if (array instanceof byte[]) {
+            return ((byte[]) array)[index];
+        } else if (array instanceof short[]) {
+            return ((short[]) array)[index];
+        } else if (array instanceof char[]) {
+            return ((char[]) array)[index];
+        } else if (array instanceof float[]) {
+            return ((float[]) array)[index];
+        }
+        return ((boolean[]) array)[index];
+    }
+
+    /**
+     * Raise the exception for the given evaluation result if it is
+     * <code>MISSING</code> or <code>INVALID</code>.
+     *
+     * @param value
+     *            The evaluation result.
+     * @return The value.
+     * @exception NoSuchElementException
+     *                If the value is <code>MISSING</code>.
+     * @exception IllegalArgumentException
+     *                If the value is <code>INVALID</code>.
+     */
+    private static Object check(Object value) {
+        if (value == MISSING) {
+            throw new NoSuchElementException();
+        }
+        if (value == INVALID) {
+            throw new IllegalArgumentException();
+        }
+        return value;
+    }
+
+    /**
+     * Return the path.
+     *
+     * @return The path.
+     */
+    public String toString() {
+        return path;
+    }
+}
@@ -0,0 +1,97 @@
+package com.goodworkalan.verbiage;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reusable buffers for rendering messages, kept in a small pool of slots
+ * chosen by the identity hash code of the thread.
+ * <p>
+ * The pool is not thread local. A thread takes the scratch buffers out of its
+ * slot while it renders a message and puts them back when it is done, so that
+ * the number of pooled buffers is bounded by the number of slots no matter how
+ * many threads, virtual or otherwise, render messages. When a slot is empty,
+ * because another thread that shares the slot is rendering, or because a
+ * message is rendered while rendering another message, new buffers are
+ * created and are put back in the slot when released.
+ *
+ * @author Alan Gutierrez
+ */
+final class Scratch {
+    /** The largest string builder capacity that is returned to the pool. */
+    private final static int MAXIMUM_CAPACITY = 8192;
+
+    /** The pool of scratch buffers. */
+    private final static AtomicReferenceArray<Scratch> pool = new AtomicReferenceArray<Scratch>(getPoolSize());
+
+    /** The string builder. */
+    private final StringBuilder builder = new StringBuilder(256);
+
+    /** The format arguments. */
+    private final Arguments arguments = new Arguments(16);
+
+    /** The pool slot to which this scratch is returned. */
+    private int slot;
+
+    /**
+     * Get the number of slots in the pool, which is the power of two that is
+     * at least twice the number of processors.
+     *
+     * @return The number of slots in the pool.
+     */
+    private static int getPoolSize() {
+        int size = 1;
+        while (size < Runtime.getRuntime().availableProcessors() * 2) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * Take a scratch buffer from the pool slot of the current thread,
+     * creating one if the slot is empty.
+     *
+     * @return A scratch buffer.
+     */
+    public static Scratch acquire() {
+        int hash = Thread.currentThread().hashCode();
+        int slot = (hash ^ (hash >>> 16)) & (pool.length() - 1);
+        Scratch scratch = pool.getAndSet(slot, null);
+        if (scratch == null) {
+            scratch = new Scratch();
+        }
+        scratch.slot = slot;
+        return scratch;
+    }
+
+    /**
+     * Clear the buffers and return them to the pool slot from which they
+     * were taken. A string builder that has grown beyond the maximum capacity
+     * is not returned to the pool.
+     */
+    public void release() {
+        arguments.clear();
+        if (builder.capacity() <= MAXIMUM_CAPACITY) {
+            builder.setLength(0);
+            pool.set(slot, this);
+        }
+    }
+
+    /**
+     * Get the empty string builder.
+     *
+     * @return The string builder.
+     */
+    public StringBuilder getBuilder() {
+        return builder;
+    }
+
+    /**
+     * Get the empty format argument list. The argument list is cleared when
+     * the scratch is released.
+     *
+     * @return The format argument list.
+     */
+    public Arguments getArguments() {
+        return arguments;
+    }
+}
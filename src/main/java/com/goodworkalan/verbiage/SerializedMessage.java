@@ -0,0 +1,290 @@
+package com.goodworkalan.verbiage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The serialized form of a message, which writes the compact form of the
+ * message in place of the message. The compact form contains the context,
+ * bundle name, message key and locale of the message followed by the values
+ * of the paths selected by the message template, each written as its path,
+ * its value type and its value.
+ *
+ * @author Alan Gutierrez
+ */
+class SerializedMessage implements Serializable {
+    /** The serial version id. */
+    private final static long serialVersionUID = 1L;
+
+    /** The version of the compact form. */
+    private final static byte VERSION = 1;
+
+    /** The value type of a string of any length. */
+    private final static byte LONG_STRING = 12;
+
+    /** The value type of a serialized object. */
+    private final static byte OBJECT = 13;
+
+    /** The longest string written with <code>writeUTF</code>. */
+    private final static int MAX_UTF_LENGTH = 65535 / 3;
+
+    /** The message. */
+    private transient Message message;
+
+    /**
+     * Create the serialized form of the given message.
+     *
+     * @param message
+     *            The message.
+     */
+    public SerializedMessage(Message message) {
+        this.message = message;
+    }
+
+    /**
+     * Write the compact form of the message.
+     *
+     * @param out
+     *            The object output stream.
+     * @exception IOException
+     *                If an I/O error occurs.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        message.writeTo(out);
+    }
+
+    /**
+     * Read the compact form of the message.
+     *
+     * @param in
+     *            The object input stream.
+     * @exception IOException
+     *                If an I/O error occurs.
+     * @exception ClassNotFoundException
+     *                If the class of a serialized value cannot be found.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        message = Message.readFrom(in);
+    }
+
+    /**
+     * Replace the serialized form with the message that was read.
+     *
+     * @return The message.
+     * @exception InvalidObjectException
+     *                If the message was not read.
+     */
+    private Object readResolve() throws InvalidObjectException {
+        if (message == null) {
+            throw new InvalidObjectException("Message not read.");
+        }
+        return message;
+    }
+
+    /**
+     * Write the compact form of a message to the given output.
+     *
+     * @param out
+     *            The output.
+     * @param context
+     *            The message bundle context.
+     * @param bundleName
+     *            The message bundle file name.
+     * @param messageKey
+     *            The message key.
+     * @param locale
+     *            The locale.
+     * @param values
+     *            The map of selected paths to their values.
+     * @exception IOException
+     *                If an I/O error occurs.
+     */
+    static void write(DataOutput out, String context, String bundleName, String messageKey, Locale locale, Map<String, Object> values) throws IOException {
+        out.writeByte(VERSION);
+        out.writeUTF(context);
+        out.writeUTF(bundleName);
+        out.writeUTF(messageKey);
+        out.writeUTF(locale.toLanguageTag());
+        out.writeInt(values.size());
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            out.writeUTF(entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Write the given value as its value type followed by its value.
+     *
+     * @param out
+     *            The output.
+     * @param value
+     *            The value.
+     * @exception IOException
+     *                If an I/O error occurs.
+     */
+    private static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(BinaryLog.NULL);
+        } else if (value instanceof String) {
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(BinaryLog.INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(BinaryLog.LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(BinaryLog.DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(BinaryLog.FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(BinaryLog.SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BinaryLog.BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(BinaryLog.CHAR);
+            out.writeChar((Character) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BinaryLog.BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BinaryLog.BIG_INTEGER);
+            out.writeUTF(value.toString());
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BinaryLog.BIG_DECIMAL);
+            out.writeUTF(value.toString());
+        } else if (out instanceof ObjectOutput && value instanceof Serializable) {
+            out.writeByte(OBJECT);
+            ((ObjectOutput) out).writeObject(value);
+        } else {
+            writeString(out, Converters.toString(value));
+        }
+    }
+
+    /**
+     * Write the given string as a string value, written with
+     * <code>writeUTF</code> if it is short enough, otherwise as its length
+     * followed by its characters.
+     *
+     * @param out
+     *            The output.
+     * @param string
+     *            The string.
+     * @exception IOException
+     *                If an I/O error occurs.
+     */
+    private static void writeString(DataOutput out, String string) throws IOException {
+        if (string.length() <= MAX_UTF_LENGTH) {
+            out.writeByte(BinaryLog.STRING);
+            out.writeUTF(string);
+        } else {
+            out.writeByte(LONG_STRING);
+            out.writeInt(string.length());
+            out.writeChars(string);
+        }
+    }
+
+    /**
+     * Read the compact form of a message from the given input. The message
+     * bundle of the message is loaded with the context class loader of the
+     * current thread.
+     *
+     * @param in
+     *            The input.
+     * @return The message.
+     * @exception IOException
+     *                If an I/O error occurs or the compact form is invalid.
+     */
+    static Message read(DataInput in) throws IOException {
+        if (in.readByte() != VERSION) {
+            throw new StreamCorruptedException("Unknown message version.");
+        }
+        String context = in.readUTF();
+        String bundleName = in.readUTF();
+        String messageKey = in.readUTF();
+        Locale locale = Locale.forLanguageTag(in.readUTF());
+        int count = in.readInt();
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < count; i++) {
+            String path = in.readUTF();
+            values.put(path, readValue(in));
+        }
+        return new Message(context, bundleName, messageKey, Collections.unmodifiableMap(values), null, true, Thread.currentThread().getContextClassLoader(), locale);
+    }
+
+    /**
+     * Read a value written as its value type followed by its value.
+     *
+     * @param in
+     *            The input.
+     * @return The value.
+     * @exception IOException
+     *                If an I/O error occurs or the value type is not known.
+     */
+    private static Object readValue(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case BinaryLog.NULL:
+            return null;
+        case BinaryLog.STRING:
+            return in.readUTF();
+        case BinaryLog.INT:
+            return in.readInt();
+        case BinaryLog.LONG:
+            return in.readLong();
+        case BinaryLog.DOUBLE:
+            return in.readDouble();
+        case BinaryLog.FLOAT:
+            return in.readFloat();
+        case BinaryLog.SHORT:
+            return in.readShort();
+        case BinaryLog.BYTE:
+            return in.readByte();
+        case BinaryLog.CHAR:
+            return in.readChar();
+        case BinaryLog.BOOLEAN:
+            return in.readBoolean();
+        case BinaryLog.BIG_INTEGER:
+            return new BigInteger(in.readUTF());
+        case BinaryLog.BIG_DECIMAL:
+            return new BigDecimal(in.readUTF());
+        case LONG_STRING:
+            char[] characters = new char[in.readInt()];
+            for (int i = 0; i < characters.length; i++) {
+                characters[i] = in.readChar();
+            }
+            return new String(characters);
+        case OBJECT:
+            if (in instanceof ObjectInput) {
+                try {
+                    return ((ObjectInput) in).readObject();
+                } catch (ClassNotFoundException e) {
+                    InvalidObjectException invalid = new InvalidObjectException("Value class not found.");
+                    invalid.initCause(e);
+                    throw invalid;
+                }
+            }
+        }
+        throw new StreamCorruptedException("Unknown value type " + type + ".");
+    }
+}
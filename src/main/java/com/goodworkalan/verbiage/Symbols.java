@@ -0,0 +1,97 @@
+package com.goodworkalan.verbiage;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The number formatting symbols of a locale used by the compiled format
+ * conversions. The symbols are resolved once for each locale and cached.
+ *
+ * @author Alan Gutierrez
+ */
+final class Symbols {
+    /** The cache of symbols by locale. */
+    private final static ConcurrentMap<Locale, Symbols> cache = new ConcurrentHashMap<Locale, Symbols>();
+
+    /** The zero digit. */
+    private final char zero;
+
+    /** The decimal separator. */
+    private final char decimalSeparator;
+
+    /**
+     * Resolve the symbols for the given locale.
+     *
+     * @param locale
+     *            The locale.
+     */
+    private Symbols(Locale locale) {
+        if (locale.equals(Locale.US)) {
+            this.zero = '0';
+            this.decimalSeparator = '.';
+        } else {
+            DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+            this.zero = symbols.getZeroDigit();
+            this.decimalSeparator = symbols.getDecimalSeparator();
+        }
+    }
+
+    /**
+     * Get the symbols for the given locale.
+     *
+     * @param locale
+     *            The locale.
+     * @return The symbols.
+     */
+    public static Symbols getInstance(Locale locale) {
+        Symbols symbols = cache.get(locale);
+        if (symbols == null) {
+            symbols = new Symbols(locale);
+            Symbols existing = cache.putIfAbsent(locale, symbols);
+            if (existing != null) {
+                symbols = existing;
+            }
+        }
+        return symbols;
+    }
+
+    /**
+     * Get the zero digit.
+     *
+     * @return The zero digit.
+     */
+    public char getZero() {
+        return zero;
+    }
+
+    /**
+     * Get the decimal separator.
+     *
+     * @return The decimal separator.
+     */
+    public char getDecimalSeparator() {
+        return decimalSeparator;
+    }
+
+    /**
+     * Replace the ASCII digits in the given string builder from the given
+     * start index to the end of the builder with the digits of this locale.
+     *
+     * @param builder
+     *            The string builder.
+     * @param start
+     *            The index of the first character to localize.
+     */
+    public void localize(StringBuilder builder, int start) {
+        if (zero != '0') {
+            for (int i = start, stop = builder.length(); i < stop; i++) {
+                char ch = builder.charAt(i);
+                if (ch >= '0' && ch <= '9') {
+                    builder.setCharAt(i, (char) (ch - '0' + zero));
+                }
+            }
+        }
+    }
+}
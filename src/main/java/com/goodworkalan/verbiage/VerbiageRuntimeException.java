@@ -0,0 +1,111 @@
+package com.goodworkalan.verbiage;
+
+import java.util.Map;
+
+/**
+ * An unchecked exception whose message is an internationalized message. The
+ * message is rendered when <code>getMessage</code> is first called and the
+ * rendered message is cached. Creating the exception does not load the
+ * message bundle.
+ * <p>
+ * An exception that is used for control flow can be created without a stack
+ * trace, so that creating it does not call <code>fillInStackTrace</code>.
+ * <p>
+ * The message is serialized in its compact form, without the rendered
+ * message, and is rendered again when the exception is read.
+ *
+ * @author Alan Gutierrez
+ */
+public class VerbiageRuntimeException extends RuntimeException {
+    /** The serial version id. */
+    private static final long serialVersionUID = 1L;
+
+    /** The message and its cached rendering. */
+    private final ExceptionMessage message;
+
+    /**
+     * Create an exception with the given message.
+     *
+     * @param message
+     *            The message.
+     */
+    public VerbiageRuntimeException(Message message) {
+        this(message, null, true);
+    }
+
+    /**
+     * Create an exception with the given message and cause.
+     *
+     * @param message
+     *            The message.
+     * @param cause
+     *            The cause.
+     */
+    public VerbiageRuntimeException(Message message, Throwable cause) {
+        this(message, cause, true);
+    }
+
+    /**
+     * Create an exception with the given message and cause, with or without
+     * a stack trace.
+     *
+     * @param message
+     *            The message.
+     * @param cause
+     *            The cause or null.
+     * @param stackTrace
+     *            Whether to fill in the stack trace.
+     */
+    public VerbiageRuntimeException(Message message, Throwable cause, boolean stackTrace) {
+        super(null, cause, true, stackTrace);
+        this.message = new ExceptionMessage(message);
+    }
+
+    /**
+     * Get the package in which to look for the message bundle.
+     *
+     * @return The message bundle context.
+     */
+    public String getContext() {
+        return message.getMessage().getContext();
+    }
+
+    /**
+     * Get the key of the message in the message bundle.
+     *
+     * @return The message key.
+     */
+    public String getMessageKey() {
+        return message.getMessage().getMessageKey();
+    }
+
+    /**
+     * Get the map of variables.
+     *
+     * @return The map of variables.
+     */
+    public Map<?, ?> getVariables() {
+        return message.getMessage().getVariables();
+    }
+
+    /**
+     * Get the value in the variables at the given path.
+     *
+     * @param path
+     *            The path.
+     * @return The value found by navigating the path or null if the path does
+     *         not exist.
+     */
+    public Object get(String path) {
+        return message.getMessage().get(path);
+    }
+
+    /**
+     * Get the rendered message, rendering it and caching it on first use.
+     *
+     * @return The rendered message.
+     */
+    public String getMessage() {
+        return message.getRendered();
+    }
+}
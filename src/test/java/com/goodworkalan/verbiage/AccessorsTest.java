@@ -0,0 +1,262 @@
+package com.goodworkalan.verbiage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the Accessors class.
+ *
+ * @author Alan Gutierrez
+ */
+public class AccessorsTest {
+    /** A bean with getters. */
+    public final static class Customer {
+        /** The customer id. */
+        private final long id;
+
+        /** The customer name. */
+        private final String name;
+
+        /**
+         * Create a customer.
+         *
+         * @param id
+         *            The customer id.
+         * @param name
+         *            The customer name.
+         */
+        public Customer(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        /**
+         * Get the customer id.
+         *
+         * @return The customer id.
+         */
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Get the customer name.
+         *
+         * @return The customer name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Whether the customer is preferred.
+         *
+         * @return True.
+         */
+        public boolean isPreferred() {
+            return true;
+        }
+
+        /**
+         * A static method that is not a property.
+         *
+         * @return A string.
+         */
+        public static String getStatic() {
+            return "static";
+        }
+    }
+
+    /** An order with public fields and getters. */
+    public final static class Order {
+        /** The order total. */
+        public final double total = 12.5;
+
+        /** The number of items. */
+        public int items = 3;
+
+        /** The number of times the count getter was called. */
+        public int calls;
+
+        /** Whether the order was deleted. */
+        public boolean deleted;
+
+        /**
+         * Get the customer.
+         *
+         * @return The customer.
+         */
+        public Customer getCustomer() {
+            return new Customer(-1, "Alan");
+        }
+
+        /**
+         * Get the count, counting the calls to this getter.
+         *
+         * @return The count.
+         */
+        public long getCount() {
+            return ++calls;
+        }
+
+        /**
+         * Throw an exception.
+         *
+         * @return Nothing.
+         */
+        public String getBroken() {
+            calls++;
+            throw new IllegalStateException();
+        }
+
+        /**
+         * A method that is not a getter and has a side effect.
+         *
+         * @return True.
+         */
+        public boolean delete() {
+            deleted = true;
+            return true;
+        }
+
+        /**
+         * A getter that declares a checked exception.
+         *
+         * @return A string.
+         * @exception Exception
+         *                Never.
+         */
+        public String getChecked() throws Exception {
+            return "checked";
+        }
+    }
+
+    /** A class that is not public with a public getter. */
+    private final static class Hidden {
+        /** A public field of a class that is not public. */
+        public final String field = "field";
+
+        /**
+         * Get a value.
+         *
+         * @return A value.
+         */
+        public String getValue() {
+            return "value";
+        }
+    }
+
+    /**
+     * Create a message in this package with the given key and a single
+     * variable named order.
+     *
+     * @param key
+     *            The message key.
+     * @return A message.
+     */
+    private Message makeMessage(String key) {
+        return new Message(AccessorsTest.class.getCanonicalName(), "test_messages", key, Collections.singletonMap("order", new Order()));
+    }
+
+    /** Test reading properties. */
+    @Test
+    public void properties() {
+        Message.setAccessors(true);
+        try {
+            PathExpression id = PathExpression.valueOf("order.customer.id");
+            Object root = Collections.singletonMap("order", new Order());
+            assertEquals(id.get(root), -1L);
+            assertEquals(id.get(root), -1L);
+            assertEquals(PathExpression.valueOf("order.customer.name").get(root), "Alan");
+            assertEquals(PathExpression.valueOf("order.customer.preferred").get(root), true);
+            assertEquals(PathExpression.valueOf("order.total").get(root), 12.5);
+            assertEquals(PathExpression.valueOf("order.items").get(root), 3);
+            assertNull(PathExpression.valueOf("order.customer.static").get(root));
+            assertNull(PathExpression.valueOf("order.customer.missing").get(root));
+            assertNull(PathExpression.valueOf("order.customer.class").get(root));
+            assertNull(PathExpression.valueOf("order.customer.0").get(root));
+            assertNull(PathExpression.valueOf("order.broken").get(root));
+            assertNull(PathExpression.valueOf("order.checked").get(root));
+        } finally {
+            Message.setAccessors(false);
+        }
+    }
+
+    /** Test that only getters, record components and fields are read. */
+    @Test
+    public void sideEffects() {
+        Message.setAccessors(true);
+        try {
+            Order order = new Order();
+            Object root = Collections.singletonMap("order", order);
+            assertNull(PathExpression.valueOf("order.delete").get(root));
+            assertFalse(order.deleted);
+            assertNull(PathExpression.valueOf("order.hashCode").get(root));
+            assertNull(PathExpression.valueOf("iterator.next").get(Collections.singletonMap("iterator", Collections.singletonList("a").iterator())));
+        } finally {
+            Message.setAccessors(false);
+        }
+    }
+
+    /** Test reading through public supertypes of classes that are not public. */
+    @Test
+    public void access() {
+        Message.setAccessors(true);
+        try {
+            Map.Entry<?, ?> entry = Collections.singletonMap("k", "v").entrySet().iterator().next();
+            assertEquals(PathExpression.valueOf("entry.key").get(Collections.singletonMap("entry", entry)), "k");
+            Object root = Collections.singletonMap("hidden", new Hidden());
+            assertNull(PathExpression.valueOf("hidden.value").get(root));
+            assertNull(PathExpression.valueOf("hidden.field").get(root));
+        } finally {
+            Message.setAccessors(false);
+        }
+    }
+
+    /** Test that a getter is called once for each evaluation. */
+    @Test
+    public void once() {
+        Message.setAccessors(true);
+        try {
+            Order order = new Order();
+            Map<String, Order> root = Collections.singletonMap("order", order);
+            Arguments arguments = new Arguments(4);
+            assertSame(PathExpression.valueOf("order.count").evaluate(root, null, arguments), PathExpression.BOUND);
+            assertEquals(order.calls, 1);
+            assertEquals(arguments.getLong(0), 1L);
+            assertSame(PathExpression.valueOf("order.broken").evaluate(root, null, arguments), PathExpression.MISSING);
+            assertEquals(order.calls, 2);
+        } finally {
+            Message.setAccessors(false);
+        }
+    }
+
+    /** Test that properties are not read unless accessors are enabled. */
+    @Test
+    public void disabled() {
+        assertNull(PathExpression.valueOf("order.total").get(Collections.singletonMap("order", new Order())));
+    }
+
+    /** Test rendering properties without boxing primitives. */
+    @Test
+    public void render() {
+        Message.setAccessors(true);
+        try {
+            Message message = makeMessage("order");
+            assertEquals(message.toString(), "Order of 3 items (3) for Alan (-1, ffffffffffffffff) totals 12.50.");
+            Arguments arguments = new Arguments(4);
+            assertSame(PathExpression.valueOf("order.total").evaluate(Collections.singletonMap("order", new Order()), null, arguments), PathExpression.BOUND);
+            assertEquals(arguments.getType(0), Arguments.DOUBLE);
+            assertEquals(message.snapshot().toString(), message.toString());
+        } finally {
+            Message.setAccessors(false);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.goodworkalan.verbiage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the BinaryLog and BinaryLogDecoder classes.
+ *
+ * @author Alan Gutierrez
+ */
+public class BinaryLogTest {
+    /** The line separator. */
+    private final static String NL = System.getProperty("line.separator");
+
+    /**
+     * Create a message with the given key and positioned arguments.
+     *
+     * @param key
+     *            The message key.
+     * @param positioned
+     *            The positioned arguments.
+     * @return A message.
+     */
+    private Message makeMessage(String key, Object...positioned) {
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("b", Collections.singletonMap("c", "World"));
+        variables.put("a", 'a');
+        variables.put("fred", new java.math.BigDecimal("1.25"));
+        return new Message(BinaryLogTest.class.getCanonicalName(), "test_messages", key, variables, positioned);
+    }
+
+    /**
+     * Decode the given buffer from its start.
+     *
+     * @param buffer
+     *            The buffer.
+     * @return The decoded messages.
+     */
+    private String decode(ByteBuffer buffer) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(0);
+        new BinaryLogDecoder(BinaryLogTest.class.getClassLoader(), Locale.getDefault()).decode(duplicate, builder);
+        return builder.toString();
+    }
+
+    /** Check writing and decoding messages. */
+    @Test
+    public void roundTrip() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        BinaryLog log = new BinaryLog(buffer);
+        Message[] messages = new Message[] {
+            makeMessage("two"),
+            makeMessage("none"),
+            makeMessage("positioned", (byte) -1, Long.MAX_VALUE),
+            makeMessage("two"),
+            makeMessage("primitive_array"),
+            makeMessage("missing"),
+            Message.builder(BinaryLogTest.class.getCanonicalName(), "test_messages", "primitives").arg(7L).arg(1.2345).arg(-1).build()
+        };
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < messages.length; i++) {
+            assertTrue(log.write(messages[i]));
+            expected.append(messages[i]).append(NL);
+        }
+        assertEquals(decode(buffer), expected.toString());
+    }
+
+    /**
+     * Check that a message is decoded with the template of the locale in
+     * which it was written and formatted in the locale of the decoder.
+     */
+    @Test
+    public void localized() throws IOException {
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("a", "AAA");
+        variables.put("b", 1.5);
+        String context = BinaryLogTest.class.getCanonicalName();
+        Message french = new Message(Locale.FRANCE, context, "test_messages", "greet", variables);
+        Message american = new Message(Locale.US, context, "test_messages", "greet", variables);
+        assertEquals(french.toString(), "B=1.5 A=AAA.");
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        BinaryLog log = new BinaryLog(buffer);
+        assertTrue(log.write(french));
+        assertTrue(log.write(american));
+        assertTrue(log.write(french));
+        assertEquals(decode(buffer), "B=1.5 A=AAA." + NL + "A=AAA B=1.5." + NL + "B=1.5 A=AAA." + NL);
+    }
+
+    /** Check that a record is published only once it is complete. */
+    @Test
+    public void published() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        BinaryLog log = new BinaryLog(buffer);
+        assertTrue(log.write(makeMessage("one")));
+        int end = buffer.position();
+        assertEquals(buffer.get(end), BinaryLog.END);
+        assertTrue(log.write(makeMessage("two")));
+        assertEquals(buffer.get(buffer.position()), BinaryLog.END);
+        assertEquals(buffer.get(end), BinaryLog.DEFINE);
+    }
+
+    /** Check that a message is not written to a full log. */
+    @Test
+    public void full() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(300);
+        BinaryLog log = new BinaryLog(buffer);
+        StringBuilder large = new StringBuilder();
+        while (large.length() < 100) {
+            large.append("Large. ");
+        }
+        assertTrue(log.write(makeMessage("two")));
+        assertFalse(log.write(makeMessage("positioned", large, "b")));
+        assertTrue(log.write(makeMessage("one")));
+        assertEquals(decode(buffer), "Hello, World, a." + NL + "Hello, World." + NL);
+        log.clear();
+        assertEquals(decode(buffer), "");
+        assertTrue(log.write(makeMessage("one")));
+        assertEquals(decode(buffer), "Hello, World." + NL);
+    }
+
+    /**
+     * Check that a log started in a reused buffer or at an offset in a buffer
+     * does not decode the old contents of the buffer.
+     */
+    @Test
+    public void reused() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        BinaryLog log = new BinaryLog(buffer);
+        assertTrue(log.write(makeMessage("one")));
+        assertTrue(log.write(makeMessage("two")));
+        buffer.position(0);
+        log = new BinaryLog(buffer);
+        assertEquals(decode(buffer), "");
+        assertTrue(log.write(makeMessage("none")));
+        assertEquals(decode(buffer), "Hello." + NL);
+        buffer.position(0);
+        new BinaryLog(buffer).write(makeMessage("one"));
+        buffer.position(16);
+        log = new BinaryLog(buffer);
+        assertTrue(log.write(makeMessage("none")));
+        log.clear();
+        assertEquals(buffer.position(), 16);
+        assertEquals(buffer.get(16), BinaryLog.END);
+        assertEquals(buffer.get(0), BinaryLog.DEFINE);
+    }
+
+    /**
+     * Check that a definition is not written again for the same bundle path,
+     * message key and locale after the bundle cache is cleared.
+     */
+    @Test
+    public void clearCache() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        BinaryLog log = new BinaryLog(buffer);
+        assertTrue(log.write(makeMessage("one")));
+        int start = buffer.position();
+        assertTrue(log.write(makeMessage("one")));
+        int size = buffer.position() - start;
+        Message.clearCache();
+        start = buffer.position();
+        assertTrue(log.write(makeMessage("one")));
+        assertEquals(buffer.position() - start, size);
+        assertEquals(buffer.get(start), BinaryLog.MESSAGE);
+        assertEquals(decode(buffer), "Hello, World." + NL + "Hello, World." + NL + "Hello, World." + NL);
+    }
+
+    /** Check writing and decoding a memory mapped log file. */
+    @Test
+    public void mapped() throws IOException {
+        File file = File.createTempFile("verbiage", ".log");
+        try {
+            BinaryLog log = BinaryLog.map(file, 1024);
+            log.write(makeMessage("positioned", 1, 2.5f));
+            log.force();
+            RandomAccessFile random = new RandomAccessFile(file, "r");
+            try {
+                ByteBuffer buffer = random.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, random.length());
+                assertEquals(decode(buffer), "First: 1, Second: 2.5, Third: 1.25." + NL);
+            } finally {
+                random.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.goodworkalan.verbiage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the BundleCache class.
+ *
+ * @author Alan Gutierrez
+ */
+public class BundleCacheTest {
+    /** The path of the test bundle. */
+    private final static String BUNDLE_PATH = "com.goodworkalan.verbiage.test_messages";
+
+    /** Check that a bundle is loaded once and then reused. */
+    @Test
+    public void cached() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        Bundle bundle = BundleCache.getBundle(classLoader, BUNDLE_PATH, Locale.getDefault());
+        assertNotNull(bundle);
+        assertSame(BundleCache.getBundle(classLoader, BUNDLE_PATH, Locale.getDefault()), bundle);
+    }
+
+    /** Check that each locale has its own bundle and number symbols. */
+    @Test
+    public void locales() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        Bundle france = BundleCache.getBundle(classLoader, BUNDLE_PATH, Locale.FRANCE);
+        Bundle us = BundleCache.getBundle(classLoader, BUNDLE_PATH, Locale.US);
+        assertNotSame(france, us);
+        assertSame(france.getLocale(), Locale.FRANCE);
+        assertSame(france.getSymbols(), Symbols.getInstance(Locale.FRANCE));
+        assertSame(us.getSymbols(), Symbols.getInstance(Locale.US));
+        assertNotSame(france.getTemplate("localized"), us.getTemplate("localized"));
+    }
+
+    /** Check that a null class loader uses the system class loader. */
+    @Test
+    public void nullClassLoader() {
+        assertSame(BundleCache.getBundle(null, BUNDLE_PATH, Locale.getDefault()), BundleCache.getBundle(ClassLoader.getSystemClassLoader(), BUNDLE_PATH, Locale.getDefault()));
+    }
+
+    /** Check that each class loader gets its own bundle. */
+    @Test
+    public void classLoaderScoped() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        URLClassLoader other = new URLClassLoader(new URL[0], classLoader);
+        assertNotSame(BundleCache.getBundle(other, BUNDLE_PATH, Locale.getDefault()), BundleCache.getBundle(classLoader, BUNDLE_PATH, Locale.getDefault()));
+    }
+
+    /** Check that a missing bundle is null. */
+    @Test
+    public void missing() {
+        assertNull(BundleCache.getBundle(getClass().getClassLoader(), "com.missing.missing.test_messages", Locale.getDefault()));
+    }
+
+    /** Check that a missing message key is cached as missing. */
+    @Test
+    public void missingKey() {
+        Bundle bundle = BundleCache.getBundle(getClass().getClassLoader(), BUNDLE_PATH, Locale.getDefault());
+        assertNull(bundle.getTemplate("missing"));
+        assertNull(bundle.getTemplate("missing"));
+    }
+
+    /**
+     * Cache a bundle that is an instance of a class of its own class loader
+     * and return a weak reference to the class loader.
+     *
+     * @return A weak reference to the class loader.
+     */
+    private WeakReference<ClassLoader> cacheLoaderBundle() {
+        ClassLoader classLoader = new IsolatedClassLoader(getClass().getClassLoader(), LoaderBundle.class);
+        Bundle bundle = BundleCache.getBundle(classLoader, LoaderBundle.class.getName(), Locale.ROOT);
+        assertNotNull(bundle.getTemplate("one"));
+        assertEquals(bundle.getResourceBundle().getClass().getClassLoader(), classLoader);
+        ResourceBundle.clearCache(classLoader);
+        return new WeakReference<ClassLoader>(classLoader);
+    }
+
+    /** Check that a cached bundle does not keep its class loader. */
+    @Test
+    public void collected() throws InterruptedException {
+        WeakReference<ClassLoader> reference = cacheLoaderBundle();
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+        assertNotNull(BundleCache.getBundle(new URLClassLoader(new URL[0], getClass().getClassLoader()), BUNDLE_PATH, Locale.getDefault()));
+    }
+
+    /** Check that clearing the cache loads the bundle again. */
+    @Test
+    public void clear() {
+        ClassLoader classLoader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        Bundle bundle = BundleCache.getBundle(classLoader, BUNDLE_PATH, Locale.getDefault());
+        BundleCache.clear(classLoader);
+        assertNotSame(BundleCache.getBundle(classLoader, BUNDLE_PATH, Locale.getDefault()), bundle);
+        Message.clearCache();
+        assertNotNull(BundleCache.getBundle(classLoader, BUNDLE_PATH, Locale.getDefault()));
+    }
+}
@@ -0,0 +1,135 @@
+package com.goodworkalan.verbiage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Formatter;
+import java.util.IllegalFormatConversionException;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the CompiledFormat class.
+ *
+ * @author Alan Gutierrez
+ */
+public class CompiledFormatTest {
+    /**
+     * Assert that the compiled format writes the same output as a
+     * <code>Formatter</code> for the given format and arguments.
+     *
+     * @param locale
+     *            The locale.
+     * @param format
+     *            The format.
+     * @param arguments
+     *            The format arguments.
+     */
+    private void assertFormat(Locale locale, String format, Object...arguments) {
+        StringBuilder builder = new StringBuilder();
+        new CompiledFormat(format).format(builder, locale, arguments);
+        assertEquals(builder.toString(), new Formatter(new StringBuilder(), locale).format(format, arguments).toString());
+    }
+
+    /** Check which formats are written by hand. */
+    @Test
+    public void compiled() {
+        assertTrue(new CompiledFormat("%s %-10s %.2s %d %5d %x %f %10.3f %% %n").isCompiled());
+        assertFalse(new CompiledFormat("%1$s").isCompiled());
+        assertFalse(new CompiledFormat("%05d").isCompiled());
+        assertFalse(new CompiledFormat("%,d").isCompiled());
+        assertFalse(new CompiledFormat("%S").isCompiled());
+        assertFalse(new CompiledFormat("%tY").isCompiled());
+        assertFalse(new CompiledFormat("%.2d").isCompiled());
+        assertFalse(new CompiledFormat("%-s").isCompiled());
+        assertFalse(new CompiledFormat("%").isCompiled());
+    }
+
+    /** Check string conversions. */
+    @Test
+    public void strings() {
+        assertFormat(Locale.US, "[%s] [%8s] [%-8s] [%.2s] [%8.2s]", "abc", "abc", "abc", "abc", "abc");
+        assertFormat(Locale.US, "[%s]", (Object) null);
+        assertFormat(Locale.US, "[%s] %% [%s]%n", Thread.State.NEW, 1);
+    }
+
+    /** Check that arguments with converters are written by their converters. */
+    @Test
+    public void converted() {
+        StringBuilder builder = new StringBuilder();
+        new CompiledFormat("[%s] [%.9s] [%-18s] [%S]").format(builder, Locale.US, new Object[] { String.class, String.class, String.class, String.class });
+        assertEquals(builder.toString(), "[java.lang.String] [java.lang] [java.lang.String  ] [JAVA.LANG.STRING]");
+    }
+
+    /** Check decimal integer conversions. */
+    @Test
+    public void decimals() {
+        assertFormat(Locale.US, "%d %d %d %d", (byte) -1, (short) 300, -70000, Long.MIN_VALUE);
+        assertFormat(Locale.US, "[%6d] [%-6d]", -42, 42L);
+        assertFormat(Locale.forLanguageTag("th-TH-u-nu-thai"), "%d", 1234567890L);
+    }
+
+    /** Check hexadecimal integer conversions. */
+    @Test
+    public void hexadecimals() {
+        assertFormat(Locale.US, "%x %x %x %x", (byte) -1, (short) -2, -3, -4L);
+        assertFormat(Locale.US, "[%6x] [%-6x]", 255, 255L);
+    }
+
+    /** Check decimal float conversions. */
+    @Test
+    public void floats() {
+        assertFormat(Locale.US, "%f %.0f %.1f %.2f %10.3f %-10.3f|", 1.5, 2.5, 0.05, 1.005, Math.PI, -Math.E);
+        assertFormat(Locale.US, "%.2f %.2f %.2f %.2f", 0.125, 0.005, -0.001, -0.0);
+        assertFormat(Locale.US, "%f %f %f %8f", Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NaN);
+        assertFormat(Locale.US, "%.3f %.3f", 0.1f, 1e300);
+        assertFormat(Locale.GERMANY, "%10.3f", 1234.5678);
+        assertFormat(Locale.forLanguageTag("ar-EG"), "%.2f", -98.765);
+    }
+
+    /** Check that arguments the conversions do not handle are formatted. */
+    @Test
+    public void fallback() {
+        assertFormat(Locale.US, "%d %f %x", new java.math.BigInteger("123456789012345678901234567890"), new java.math.BigDecimal("1.25"), new java.math.BigInteger("-255"));
+        assertFormat(Locale.US, "%d %f", null, null);
+    }
+
+    /** Check that primitive arguments are written as their boxed values. */
+    @Test
+    public void primitives() {
+        Arguments arguments = new Arguments(0);
+        arguments.add(-1);
+        arguments.add(-1);
+        arguments.add(-1L);
+        arguments.add(-1L);
+        arguments.add(Math.PI);
+        arguments.add(42L);
+        arguments.add("a");
+        String format = "%d %x %-4d| %x %8.4f %s %s";
+        StringBuilder builder = new StringBuilder();
+        new CompiledFormat(format).format(builder, Locale.US, arguments);
+        assertEquals(builder.toString(), new Formatter(new StringBuilder(), Locale.US).format(format, arguments.toArray()).toString());
+        assertEquals(builder.toString(), "-1 ffffffff -1  | ffffffffffffffff   3.1416 42 a");
+    }
+
+    /** Check a missing argument. */
+    @Test
+    public void missingArgument() {
+        try {
+            new CompiledFormat("%s %-4s").format(new StringBuilder(), Locale.US, new Object[] { "a" });
+        } catch (MissingFormatArgumentException e) {
+            assertEquals(e.getMessage(), "Format specifier '%-4s'");
+            return;
+        }
+        throw new AssertionError();
+    }
+
+    /** Check a mismatched argument. */
+    @Test(expectedExceptions = IllegalFormatConversionException.class)
+    public void mismatch() {
+        new CompiledFormat("%d").format(new StringBuilder(), Locale.US, new Object[] { "a" });
+    }
+}
@@ -0,0 +1,100 @@
+package com.goodworkalan.verbiage;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the CompiledMessageFormat class.
+ *
+ * @author Alan Gutierrez
+ */
+public class CompiledMessageFormatTest {
+    /**
+     * Format the given pattern in the given locale with the given arguments.
+     *
+     * @param pattern
+     *            The message format pattern.
+     * @param locale
+     *            The locale.
+     * @param arguments
+     *            The format arguments.
+     * @return The formatted message.
+     */
+    private String format(CompiledMessageFormat pattern, Locale locale, Object...arguments) {
+        StringBuilder builder = new StringBuilder();
+        pattern.format(builder, locale, new Arguments(arguments));
+        return builder.toString();
+    }
+
+    /** Test choice formats. */
+    @Test
+    public void choice() {
+        CompiledMessageFormat pattern = new CompiledMessageFormat("{0} has {1,choice,0#no files|1#one file|1<{1,number,integer} files}.");
+        assertEquals(pattern.getArgumentCount(), 2);
+        assertEquals(format(pattern, Locale.US, "Disk", 0), "Disk has no files.");
+        assertEquals(format(pattern, Locale.US, "Disk", 1), "Disk has one file.");
+        assertEquals(format(pattern, Locale.US, "Disk", 1234), "Disk has 1,234 files.");
+    }
+
+    /** Test formatting primitive arguments and converted arguments. */
+    @Test
+    public void arguments() {
+        CompiledMessageFormat pattern = new CompiledMessageFormat("{1} {0,number,0.0} {2}");
+        Arguments arguments = new Arguments(3);
+        arguments.add(2.25);
+        arguments.add(7L);
+        arguments.add(String.class);
+        StringBuilder builder = new StringBuilder("> ");
+        pattern.format(builder, Locale.US, arguments);
+        assertEquals(builder.toString(), "> 7 2.2 java.lang.String");
+    }
+
+    /** Test that formats are compiled for each locale. */
+    @Test
+    public void locales() {
+        CompiledMessageFormat pattern = new CompiledMessageFormat("{0,number,#,##0.00} {1,date,yyyy}");
+        Date date = new Date(1000L * 60 * 60 * 24 * (365 * 10 + 180));
+        assertEquals(format(pattern, Locale.US, 1234.5, date), "1,234.50 1980");
+        assertEquals(format(pattern, Locale.GERMANY, 1234.5, date), "1.234,50 1980");
+        assertEquals(format(pattern, Locale.US, 1234.5, date), "1,234.50 1980");
+    }
+
+    /** Test formatting the same pattern from many threads. */
+    @Test
+    public void threads() throws InterruptedException {
+        final CompiledMessageFormat pattern = new CompiledMessageFormat("{0}: {1,choice,0#none|1#one|1<{1,number,integer}}");
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            final int thread = i;
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 2000; j++) {
+                            String expected = thread + ": " + (j == 0 ? "none" : j == 1 ? "one" : String.format(Locale.US, "%,d", j));
+                            if (!format(pattern, Locale.US, thread, j).equals(expected)) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        done.await();
+        assertEquals(failures.get(), 0);
+    }
+
+    /** Test that an invalid pattern is rejected. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalid() {
+        new CompiledMessageFormat("{0,nonsense}");
+    }
+}
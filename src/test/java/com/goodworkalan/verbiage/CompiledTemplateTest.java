@@ -0,0 +1,113 @@
+package com.goodworkalan.verbiage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Locale;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the CompiledTemplate class.
+ *
+ * @author Alan Gutierrez
+ */
+public class CompiledTemplateTest {
+    /** Check a message format that is returned as is. */
+    @Test
+    public void literal() {
+        CompiledTemplate template = new CompiledTemplate("  Hello.  ");
+        assertTrue(template.isLiteral());
+        assertFalse(template.isBlank());
+        assertNull(template.getPaths());
+        assertEquals(template.getFormat(), "Hello.");
+    }
+
+    /** Check a blank message format. */
+    @Test
+    public void blank() {
+        assertTrue(new CompiledTemplate("  ").isBlank());
+    }
+
+    /** Check parsing the argument paths. */
+    @Test
+    public void paths() {
+        CompiledTemplate template = new CompiledTemplate("a.b,c~%s, %s~");
+        assertFalse(template.isLiteral());
+        assertEquals(template.getPaths(), new String[] { "a.b", "c" });
+        assertEquals(template.getExpansions(), 0);
+        assertEquals(template.getFormat(), "%s, %s~");
+    }
+
+    /** Check recording the positioned argument expansion. */
+    @Test
+    public void expansion() {
+        CompiledTemplate template = new CompiledTemplate("$@,fred~%s %s %s");
+        assertEquals(template.getPaths(), new String[] { null, "fred" });
+        assertEquals(template.getExpansions(), 1);
+        template = new CompiledTemplate("~Values {$@} and {fred}.");
+        assertEquals(template.getPaths(), new String[] { null, "fred" });
+        assertEquals(template.getExpansions(), 1);
+        assertEquals(template.getExpressions()[0], null);
+    }
+
+    /** Check that a mistyped path list is not mistaken for a literal. */
+    @Test
+    public void badPathList() {
+        CompiledTemplate template = new CompiledTemplate("a, b~%s %s");
+        assertFalse(template.isLiteral());
+        assertEquals(template.getPaths(), new String[] { "a", " b" });
+        assertEquals(template.getExpressions()[1], null);
+        assertEquals(template.getExpansions(), 0);
+    }
+
+    /** Check parsing inline placeholders. */
+    @Test
+    public void inline() {
+        CompiledTemplate template = new CompiledTemplate("~The manager {manager.lastName:-8s} owes {amount:.2f} ({percent}%) {{not} {$1}.");
+        assertFalse(template.isLiteral());
+        assertEquals(template.getPaths(), new String[] { "manager.lastName", "amount", "percent", "$1" });
+        assertEquals(template.getExpansions(), 0);
+        assertEquals(template.getFormat(), "The manager %-8s owes %.2f (%s%%) {not} %s.");
+        assertTrue(template.getCompiledFormat().isCompiled());
+    }
+
+    /** Check that braces without a leading tilde do not start a template. */
+    @Test
+    public void notInline() {
+        assertTrue(new CompiledTemplate("Use {name} in config.").isLiteral());
+        assertEquals(new CompiledTemplate("Send {\"id\": {id}}.").getFormat(), "Send {\"id\": {id}}.");
+        assertTrue(new CompiledTemplate("Use {} or { 1 } or {a.").isLiteral());
+        CompiledTemplate template = new CompiledTemplate("~Use {{name}} or {a.");
+        assertEquals(template.getPaths(), new String[0]);
+        assertEquals(template.getFormat(), "Use {name} or {a.");
+        assertTrue(new CompiledTemplate(" ~ ").isBlank());
+    }
+
+    /** Check detecting a message format pattern. */
+    @Test
+    public void messageFormat() {
+        CompiledTemplate template = new CompiledTemplate("~File {0} not found in {2,choice,0#modules|1#module|1<modules}.");
+        assertFalse(template.isLiteral());
+        assertTrue(template.isMessageFormat());
+        assertNull(template.getCompiledFormat());
+        assertEquals(template.getPaths(), new String[] { "$1", "$2", "$3" });
+        assertEquals(template.getFormat(), "File {0} not found in {2,choice,0#modules|1#module|1<modules}.");
+        assertFalse(new CompiledTemplate("a~%s").isMessageFormat());
+        assertFalse(new CompiledTemplate("~Bad {0,nonsense}.").isMessageFormat());
+        assertFalse(new CompiledTemplate("~Mixed {a} and {0}.").isMessageFormat());
+        CompiledTemplate literal = new CompiledTemplate("Don't use {0} here.");
+        assertTrue(literal.isLiteral());
+        assertEquals(literal.getFormat(), "Don't use {0} here.");
+    }
+
+    /** Check that templates are compiled once per bundle. */
+    @Test
+    public void cached() {
+        Bundle bundle = BundleCache.getBundle(getClass().getClassLoader(), "com.goodworkalan.verbiage.test_messages", Locale.getDefault());
+        assertSame(bundle.getTemplate("two"), bundle.getTemplate("two"));
+    }
+}
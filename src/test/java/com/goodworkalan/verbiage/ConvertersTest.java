@@ -0,0 +1,194 @@
+package com.goodworkalan.verbiage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the Converters class.
+ *
+ * @author Alan Gutierrez
+ */
+public class ConvertersTest {
+    /** An identifier type. */
+    private interface Identifier {
+        /**
+         * Get the identifier value.
+         *
+         * @return The identifier value.
+         */
+        public long getValue();
+    }
+
+    /** An order identifier. */
+    private static class OrderId implements Identifier {
+        /** The identifier value. */
+        private final long value;
+
+        /**
+         * Create an order identifier.
+         *
+         * @param value
+         *            The identifier value.
+         */
+        public OrderId(long value) {
+            this.value = value;
+        }
+
+        /**
+         * Get the identifier value.
+         *
+         * @return The identifier value.
+         */
+        public long getValue() {
+            return value;
+        }
+    }
+
+    /** A subclass of the order identifier. */
+    private final static class SpecialOrderId extends OrderId implements Serializable {
+        /** The serial version id. */
+        private final static long serialVersionUID = 1L;
+
+        /**
+         * Create a special order identifier.
+         *
+         * @param value
+         *            The identifier value.
+         */
+        public SpecialOrderId(long value) {
+            super(value);
+        }
+    }
+
+    /** Writes identifiers with a prefix and converts them to their value. */
+    private final static ArgumentConverter<Identifier> IDENTIFIER = new ArgumentConverter<Identifier>() {
+        public void write(StringBuilder builder, Identifier value) {
+            builder.append("id-").append(value.getValue());
+        }
+
+        public Object convert(Identifier value) {
+            return value.getValue();
+        }
+    };
+
+    /** Writes byte arrays as hexadecimal. */
+    private final static ArgumentConverter<byte[]> HEX = new ArgumentConverter<byte[]>() {
+        public void write(StringBuilder builder, byte[] value) {
+            for (int i = 0; i < value.length; i++) {
+                builder.append(Character.forDigit((value[i] >> 4) & 0xf, 16)).append(Character.forDigit(value[i] & 0xf, 16));
+            }
+        }
+    };
+
+    /**
+     * Create a message in this package with the given key and variable f.
+     *
+     * @param key
+     *            The message key.
+     * @param f
+     *            The value of the variable f.
+     * @return A message.
+     */
+    private Message makeMessage(String key, Object f) {
+        return new Message(ConvertersTest.class.getCanonicalName(), "test_messages", key, Collections.singletonMap("f", f));
+    }
+
+    /** Test finding converters by type. */
+    @Test
+    public void find() {
+        assertSame(Converters.get(Class.class), Converters.get(Class.class));
+        assertNull(Converters.get(OrderId.class));
+        Message.registerConverter(Identifier.class, IDENTIFIER);
+        try {
+            assertSame(Converters.get(OrderId.class), IDENTIFIER);
+            assertSame(Converters.get(SpecialOrderId.class), IDENTIFIER);
+            assertEquals(Converters.toString(new OrderId(7)), "id-7");
+            assertEquals(Converters.convert(new OrderId(7)), 7L);
+            assertEquals(Converters.convert("a"), "a");
+            assertNull(Converters.convert(null));
+        } finally {
+            Message.unregisterConverter(Identifier.class);
+        }
+        assertNull(Converters.get(OrderId.class));
+        assertEquals(Converters.convert(String.class), "java.lang.String");
+    }
+
+    /** An argument type converted by a converter of another class loader. */
+    private final static class Tag {
+        /**
+         * Get the text of the tag.
+         *
+         * @return The text of the tag.
+         */
+        public String toString() {
+            return "tag";
+        }
+    }
+
+    /**
+     * Register a converter for tags whose class is defined by a class loader
+     * of its own, check that it is registered while the class loader is
+     * alive and return a weak reference to the class loader.
+     *
+     * @return A weak reference to the class loader.
+     * @exception Exception
+     *                For any error.
+     */
+    private WeakReference<ClassLoader> registerLoaderConverter() throws Exception {
+        ClassLoader classLoader = new IsolatedClassLoader(getClass().getClassLoader(), LoaderConverter.class);
+        Converters.register(Tag.class, (ArgumentConverter<?>) classLoader.loadClass(LoaderConverter.class.getName()).getConstructor().newInstance());
+        System.gc();
+        assertEquals(Converters.toString(new Tag()), "converted");
+        assertEquals(Converters.get(Tag.class).getClass().getClassLoader(), classLoader);
+        return new WeakReference<ClassLoader>(classLoader);
+    }
+
+    /**
+     * Test that a registered converter does not keep the class loader of its
+     * class from being collected.
+     */
+    @Test
+    public void collected() throws Exception {
+        try {
+            WeakReference<ClassLoader> reference = registerLoaderConverter();
+            for (int i = 0; i < 50 && reference.get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertNull(reference.get());
+            assertEquals(Converters.toString(new Tag()), "tag");
+        } finally {
+            Message.unregisterConverter(Tag.class);
+        }
+    }
+
+    /** Test rendering messages with converted arguments. */
+    @Test
+    public void render() throws IOException {
+        Message.registerConverter(Identifier.class, IDENTIFIER);
+        Message.registerConverter(byte[].class, HEX);
+        try {
+            assertEquals(makeMessage("three", Arrays.asList(new OrderId(12), new SpecialOrderId(13))).toString(), "12 id-13.");
+            assertEquals(makeMessage("three", Arrays.asList(1, new byte[] { 1, (byte) 0xab })).toString(), "1 01ab.");
+            Message message = makeMessage("three", Arrays.asList(1, new OrderId(12)));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            message.writeTo(new DataOutputStream(bytes));
+            assertTrue(bytes.toString("UTF-8").contains("id-12"));
+        } finally {
+            Message.unregisterConverter(Identifier.class);
+            Message.unregisterConverter(byte[].class);
+        }
+    }
+}
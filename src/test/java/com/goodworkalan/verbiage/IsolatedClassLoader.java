@@ -0,0 +1,69 @@
+package com.goodworkalan.verbiage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A class loader that defines a single class itself from the class file of
+ * its parent, instead of delegating to its parent, so that tests can check
+ * that an instance of the class does not keep the class loader from being
+ * collected.
+ *
+ * @author Alan Gutierrez
+ */
+public class IsolatedClassLoader extends ClassLoader {
+    /** The name of the class defined by this class loader. */
+    private final String className;
+
+    /**
+     * Create a class loader that defines the given class itself.
+     *
+     * @param parent
+     *            The parent class loader.
+     * @param type
+     *            The class to define.
+     */
+    public IsolatedClassLoader(ClassLoader parent, Class<?> type) {
+        super(parent);
+        this.className = type.getName();
+    }
+
+    /**
+     * Define the isolated class from the class file of the parent, delegating
+     * every other class to the parent.
+     *
+     * @param name
+     *            The class name.
+     * @param resolve
+     *            Whether to resolve the class.
+     * @return The class.
+     * @exception ClassNotFoundException
+     *                If the class cannot be found.
+     */
+    protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (!name.equals(className)) {
+            return super.loadClass(name, resolve);
+        }
+        Class<?> loaded = findLoadedClass(name);
+        if (loaded == null) {
+            try {
+                InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+                try {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        bytes.write(buffer, 0, read);
+                    }
+                    loaded = defineClass(name, bytes.toByteArray(), 0, bytes.size());
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+        return loaded;
+    }
+}
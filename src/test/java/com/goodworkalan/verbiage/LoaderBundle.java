@@ -0,0 +1,21 @@
+package com.goodworkalan.verbiage;
+
+import java.util.ListResourceBundle;
+
+/**
+ * A resource bundle class that is loaded by a class loader of its own to
+ * check that a cached bundle does not keep its class loader from being
+ * collected.
+ *
+ * @author Alan Gutierrez
+ */
+public class LoaderBundle extends ListResourceBundle {
+    /**
+     * Get the message formats of the bundle.
+     *
+     * @return The message formats.
+     */
+    protected Object[][] getContents() {
+        return new Object[][] { { "one", "b.c~Hello, %s." } };
+    }
+}
@@ -0,0 +1,22 @@
+package com.goodworkalan.verbiage;
+
+/**
+ * An argument converter that is loaded by a class loader of its own to check
+ * that a registered converter does not keep its class loader from being
+ * collected.
+ *
+ * @author Alan Gutierrez
+ */
+public class LoaderConverter extends ArgumentConverter<Object> {
+    /**
+     * Write the text of the given argument.
+     *
+     * @param builder
+     *            The string builder.
+     * @param value
+     *            The argument.
+     */
+    public void write(StringBuilder builder, Object value) {
+        builder.append("converted");
+    }
+}
@@ -0,0 +1,82 @@
+package com.goodworkalan.verbiage;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the MessageBuilder class.
+ *
+ * @author Alan Gutierrez
+ */
+public class MessageBuilderTest {
+    /**
+     * Create a message builder for the given message key.
+     *
+     * @param key
+     *            The message key.
+     * @return A message builder.
+     */
+    private MessageBuilder builder(String key) {
+        return Message.builder(MessageBuilderTest.class.getCanonicalName(), "test_messages", key);
+    }
+
+    /** Check formatting primitive arguments. */
+    @Test
+    public void primitives() {
+        Message message = builder("primitives").arg(7L).arg(1.2345).arg(-1).build();
+        assertEquals(message.toString(), "Thread 7 took 1.235 seconds for ffffffff (-1) bytes.");
+        assertEquals(message.get("$1"), 7L);
+        assertEquals(message.get("$2"), 1.2345);
+    }
+
+    /** Check expanding primitive arguments with named variables. */
+    @Test
+    public void expand() {
+        Message message = builder("positioned").variables(Collections.singletonMap("fred", "fred")).arg(1).arg(String.class).build();
+        assertEquals(message.toString(), "First: 1, Second: java.lang.String, Third: fred.");
+    }
+
+    /** Check that a path into a primitive argument is missing. */
+    @Test
+    public void deep() {
+        assertEquals(builder("one").arg(1L).build().get("$1.a"), null);
+    }
+
+    /** Check building a message in an explicit locale. */
+    @Test
+    public void locale() {
+        assertEquals(builder("localized").locale(Locale.FRANCE).arg(2.5).arg(3).build().toString(), "Echantillon 2,50 de 3.");
+        assertEquals(builder("localized").locale(Locale.US).arg(2.5).arg(3).build().toString(), "Sample 2.50 of 3.");
+    }
+
+    /** Check that a character argument is not widened to an integer. */
+    @Test
+    public void character() {
+        assertEquals(builder("one").arg('x').build().get("$1"), 'x');
+        assertEquals(builder("positioned").variables(Collections.singletonMap("fred", "z")).arg('x').arg(1).build().toString(), "First: x, Second: 1, Third: z.");
+    }
+
+    /** Check positioned argument names in the map of variables. */
+    @Test
+    public void named() {
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("$1", 2.5);
+        variables.put("$2", 3);
+        assertEquals(builder("localized").locale(Locale.US).variables(variables).build().toString(), "Sample 2.50 of 3.");
+        assertEquals(builder("localized").locale(Locale.US).variables(variables).arg(1.5).arg(4).build().toString(), "Sample 1.50 of 4.");
+    }
+
+    /** Check that a reused builder starts with no positioned arguments. */
+    @Test
+    public void reuse() {
+        MessageBuilder builder = builder("primitives");
+        builder.arg(1L).arg(2.0).arg(3).build();
+        assertEquals(builder.arg(4L).build().toString(), "Cannot find argument named [$2] for message key [primitives] in bundle [com.goodworkalan.verbiage.test_messages]. (This is a meta error message.)");
+    }
+}
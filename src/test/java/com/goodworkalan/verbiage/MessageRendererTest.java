@@ -0,0 +1,232 @@
+package com.goodworkalan.verbiage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the MessageRenderer class.
+ *
+ * @author Alan Gutierrez
+ */
+public class MessageRendererTest {
+    /** The line separator. */
+    private final static String SEPARATOR = System.getProperty("line.separator");
+
+    /**
+     * An executor that keeps the workers it is given until they are started.
+     */
+    private final static class Held implements Executor {
+        /** The workers. */
+        public final List<Runnable> workers = new ArrayList<Runnable>();
+
+        /**
+         * Keep the given worker.
+         *
+         * @param worker
+         *            The worker.
+         */
+        public void execute(Runnable worker) {
+            workers.add(worker);
+        }
+
+        /** Start the workers. */
+        public void start() {
+            for (Runnable worker : workers) {
+                new Thread(worker).start();
+            }
+        }
+    }
+
+    /**
+     * Create a message that says hello to the given name.
+     *
+     * @param name
+     *            The name.
+     * @return A message.
+     */
+    private Message hello(String name) {
+        return new Message(MessageRendererTest.class.getCanonicalName(), "test_messages", "one", Collections.singletonMap("b", Collections.singletonMap("c", name)));
+    }
+
+    /** Test rendering messages with a pool of workers. */
+    @Test
+    public void render() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        MessageRenderer renderer = new MessageRenderer(executor, 2, 16, 4, OverflowPolicy.BLOCK);
+        StringWriter first = new StringWriter();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        MessageSink writer = MessageRenderer.toWriter(first);
+        MessageSink channel = MessageRenderer.toChannel(Channels.newChannel(second), Charset.forName("UTF-8"));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(renderer.submit(hello("World"), i % 2 == 0 ? writer : channel));
+        }
+        renderer.shutdown();
+        executor.shutdown();
+        assertEquals(renderer.getSubmitted(), 100);
+        assertEquals(renderer.getRendered(), 100);
+        assertEquals(renderer.getQueueDepth(), 0);
+        assertTrue(renderer.getMaximumQueueDepth() <= 16);
+        assertEquals(first.toString().split(SEPARATOR).length, 50);
+        assertTrue(first.toString().startsWith("Hello, World." + SEPARATOR));
+        assertEquals(new String(second.toByteArray(), Charset.forName("UTF-8")).split(SEPARATOR).length, 50);
+        try {
+            renderer.submit(hello("World"), writer);
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    /** Test that a message is rendered with the values it had when submitted. */
+    @Test
+    public void snapshot() throws InterruptedException {
+        Held executor = new Held();
+        MessageRenderer renderer = new MessageRenderer(executor, 1, 4, 4, OverflowPolicy.BLOCK);
+        Map<String, Object> b = new HashMap<String, Object>();
+        b.put("c", "World");
+        StringWriter writer = new StringWriter();
+        renderer.submit(new Message(MessageRendererTest.class.getCanonicalName(), "test_messages", "one", Collections.singletonMap("b", b)), MessageRenderer.toWriter(writer));
+        b.put("c", "Moon");
+        executor.start();
+        renderer.shutdown();
+        assertEquals(writer.toString(), "Hello, World." + SEPARATOR);
+    }
+
+    /** Test discarding messages when the queue is full. */
+    @Test
+    public void drop() throws InterruptedException {
+        Held executor = new Held();
+        MessageRenderer renderer = new MessageRenderer(executor, 1, 2, 8, OverflowPolicy.DROP);
+        StringWriter writer = new StringWriter();
+        MessageSink sink = MessageRenderer.toWriter(writer);
+        assertTrue(renderer.submit(hello("A"), sink));
+        assertTrue(renderer.submit(hello("B"), sink));
+        assertFalse(renderer.submit(hello("C"), sink));
+        assertEquals(renderer.getQueueDepth(), 2);
+        assertEquals(renderer.getMaximumQueueDepth(), 2);
+        assertEquals(renderer.getQueueCapacity(), 2);
+        assertEquals(renderer.getDropped(), 1);
+        executor.start();
+        renderer.shutdown();
+        assertEquals(writer.toString(), "Hello, A." + SEPARATOR + "Hello, B." + SEPARATOR);
+    }
+
+    /** Test rendering messages in the submitting thread when the queue is full. */
+    @Test
+    public void inline() throws InterruptedException {
+        Held executor = new Held();
+        MessageRenderer renderer = new MessageRenderer(executor, 1, 1, 8, OverflowPolicy.INLINE);
+        StringWriter writer = new StringWriter();
+        MessageSink sink = MessageRenderer.toWriter(writer);
+        assertTrue(renderer.submit(hello("A"), sink));
+        assertTrue(renderer.submit(hello("B"), sink));
+        assertEquals(writer.toString(), "Hello, B." + SEPARATOR);
+        assertEquals(renderer.getInlined(), 1);
+        executor.start();
+        renderer.shutdown();
+        assertEquals(writer.toString(), "Hello, B." + SEPARATOR + "Hello, A." + SEPARATOR);
+        assertEquals(renderer.getRendered(), 1);
+    }
+
+    /** Test waiting for room in the queue. */
+    @Test
+    public void block() throws InterruptedException {
+        final Held executor = new Held();
+        MessageRenderer renderer = new MessageRenderer(executor, 1, 1, 1, OverflowPolicy.BLOCK);
+        StringWriter writer = new StringWriter();
+        MessageSink sink = MessageRenderer.toWriter(writer);
+        renderer.submit(hello("A"), sink);
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                }
+                executor.start();
+            }
+        }).start();
+        renderer.submit(hello("B"), sink);
+        assertEquals(renderer.getBlocked(), 1);
+        renderer.shutdown();
+        assertEquals(writer.toString(), "Hello, A." + SEPARATOR + "Hello, B." + SEPARATOR);
+    }
+
+    /**
+     * Test shutting down while many threads submit to a small queue and wait
+     * for room in the queue, checking that the shut down does not hang and
+     * that every message accepted is rendered.
+     */
+    @Test(timeOut = 60000)
+    public void shutdownWhileBlocked() throws InterruptedException {
+        for (int run = 0; run < 50; run++) {
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            final MessageRenderer renderer = new MessageRenderer(executor, 1, 1, 4, OverflowPolicy.BLOCK);
+            final AtomicInteger lines = new AtomicInteger();
+            final MessageSink sink = new MessageSink() {
+                public void write(CharSequence text) {
+                    lines.addAndGet(text.toString().split(SEPARATOR).length);
+                }
+            };
+            final AtomicInteger accepted = new AtomicInteger();
+            List<Thread> producers = new ArrayList<Thread>();
+            for (int i = 0; i < 4; i++) {
+                Thread producer = new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            for (;;) {
+                                renderer.submit(hello("World"), sink);
+                                accepted.incrementAndGet();
+                            }
+                        } catch (IllegalStateException e) {
+                        }
+                    }
+                });
+                producers.add(producer);
+                producer.start();
+            }
+            Thread.sleep(run % 5);
+            renderer.shutdown();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            executor.shutdown();
+            assertEquals(renderer.getQueueDepth(), 0);
+            assertEquals(renderer.getRendered(), accepted.get());
+            assertEquals(renderer.getSubmitted(), accepted.get());
+            assertEquals(lines.get(), accepted.get());
+        }
+    }
+
+    /** Test counting batches that a sink fails to write. */
+    @Test
+    public void failed() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        MessageRenderer renderer = new MessageRenderer(executor, 1, 4, 4, OverflowPolicy.BLOCK);
+        renderer.submit(hello("A"), new MessageSink() {
+            public void write(CharSequence text) throws IOException {
+                throw new IOException();
+            }
+        });
+        renderer.shutdown();
+        executor.shutdown();
+        assertEquals(renderer.getFailed(), 1);
+    }
+}
@@ -2,9 +2,17 @@ package com.goodworkalan.verbiage;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 import org.testng.annotations.Test;
@@ -233,6 +241,29 @@ public class MessageTest {
         assertEquals(message.toString(), "First: 1, Second: 2, Third: fred.");
     }
     
+    /**
+     * Positioned arguments given as an array.
+     */
+    @Test
+    public void positionedArray() {
+        Map<Object, Object> map = new HashMap<Object, Object>();
+        map.put("fred", "fred");
+        map.put("$1", "ignored");
+        Message message = new Message(MessageTest.class.getCanonicalName(), "test_messages", "positioned", map, "1", "2");
+        assertEquals(message.toString(), "First: 1, Second: 2, Third: fred.");
+        assertEquals(message.get("$2"), "2");
+        assertNull(message.get("$3"));
+    }
+
+    /**
+     * Positioned arguments given as an array with no named variables.
+     */
+    @Test
+    public void positionedArrayOnly() {
+        Message message = new Message(MessageTest.class.getCanonicalName(), "test_messages", "two", null, "a");
+        assertEquals(message.toString(), "Cannot find argument named [b.c] for message key [two] in bundle [com.goodworkalan.verbiage.test_messages]. (This is a meta error message.)");
+    }
+
     /** Test class with no package. */
     @Test
     public void noPackage() {
@@ -255,6 +286,146 @@ public class MessageTest {
     }
     
 
+    /** Test that the bundle is resolved with the class loader of the creating thread. */
+    @Test
+    public void capturedClassLoader() {
+        Thread thread = Thread.currentThread();
+        ClassLoader classLoader = thread.getContextClassLoader();
+        Message message;
+        thread.setContextClassLoader(new URLClassLoader(new URL[0], null));
+        try {
+            message = makePopulatedMessage("none");
+        } finally {
+            thread.setContextClassLoader(classLoader);
+        }
+        assertEquals(message.toString(), "Missing message bundle [com.goodworkalan.verbiage.test_messages]. Message key is [none]. (This is a meta error message.)");
+    }
+
+    /** Test formatting into an existing string builder. */
+    @Test
+    public void formatToStringBuilder() {
+        StringBuilder builder = new StringBuilder("Message: ");
+        makePopulatedMessage("two").formatTo(builder);
+        assertEquals(builder.toString(), "Message: Hello, java.lang.String, b.");
+    }
+
+    /** Test that a format exception does not leave partial output. */
+    @Test
+    public void formatToFormatException() {
+        StringBuilder builder = new StringBuilder("Message: ");
+        makePopulatedMessage("bad_format").formatTo(builder);
+        assertEquals(builder.toString(), "Message: Format exception [Conversion = s, Flags = 0] for message key [bad_format] in bundle [com.goodworkalan.verbiage.test_messages]. (This is a meta error message.)");
+    }
+
+    /** Test formatting into an appendable. */
+    @Test
+    public void formatToAppendable() throws IOException {
+        StringWriter writer = new StringWriter();
+        makePopulatedMessage("one").formatTo(writer);
+        assertEquals(writer.toString(), "Hello, java.lang.String.");
+    }
+
+    /** Test rendering messages with pooled scratch buffers. */
+    @Test
+    public void pooling() throws IOException {
+        Message.setPooling(true);
+        try {
+            assertEquals(makePopulatedMessage("two").toString(), "Hello, java.lang.String, b.");
+            StringBuilder builder = new StringBuilder("Message: ");
+            makePopulatedMessage("bad_format").formatTo(builder);
+            assertEquals(builder.toString(), "Message: Format exception [Conversion = s, Flags = 0] for message key [bad_format] in bundle [com.goodworkalan.verbiage.test_messages]. (This is a meta error message.)");
+            StringWriter writer = new StringWriter();
+            makePopulatedMessage("one").formatTo(writer);
+            assertEquals(writer.toString(), "Hello, java.lang.String.");
+            assertEquals(makePopulatedMessage("one").toString(), "Hello, java.lang.String.");
+        } finally {
+            Message.setPooling(false);
+        }
+    }
+
+    /** Test selecting elements of primitive arrays. */
+    @Test
+    public void primitiveArray() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("samples", new double[] { 1.0, 2.345 });
+        map.put("ids", new int[] { -2 });
+        map.put("flags", new boolean[] { true });
+        assertEquals(makeMessage("primitive_array", map).toString(), "Sample 2.35 for -2 (fffffffe) true.");
+    }
+
+    /** Test rendering inline placeholders. */
+    @Test
+    public void inline() {
+        assertEquals(makePopulatedMessage("inline").toString(), "Hello, java.lang.String, b (1) {a}.");
+        assertEquals(makePopulatedMessage("inline_missing").toString(), "Cannot find argument named [b.e.8] for message key [inline_missing] in bundle [com.goodworkalan.verbiage.test_messages]. (This is a meta error message.)");
+        assertEquals(makePopulatedMessage("braces").toString(), "Use {a} in the {b.c} config.");
+        assertEquals(makePopulatedMessage("inline_literal").toString(), "Use {a} at 100%.");
+        assertEquals(makePopulatedMessage("inline_bad").toString(), "Invalid format argument name [b.!] for message key [inline_bad] in bundle [com.goodworkalan.verbiage.test_messages]. (This is a meta error message.)");
+    }
+
+    /** Test rendering message format patterns. */
+    @Test
+    public void messageFormat() {
+        String context = MessageTest.class.getCanonicalName();
+        Map<String, Object> empty = Collections.emptyMap();
+        assertEquals(new Message(context, "test_messages", "legacy", empty, "a.txt", 1).toString(), "File a.txt not found in 1 module.");
+        assertEquals(new Message(context, "test_messages", "legacy", empty, "a.txt", 3).toString(), "File a.txt not found in 3 modules.");
+        Map<Object, Object> map = Message.position(new HashMap<Object, Object>(), "b.txt", 0);
+        assertEquals(makeMessage("legacy", map).toString(), "File b.txt not found in 0 modules.");
+        assertEquals(makeMessage("legacy", map).snapshot().toString(), "File b.txt not found in 0 modules.");
+        assertEquals(new Message(context, "test_messages", "legacy_literal", empty, "a.txt").toString(), "Don't open {0}.");
+        assertEquals(new Message(context, "test_messages", "legacy_quoted", empty, "a.txt").toString(), "Don't open a.txt.");
+        assertEquals(new Message(context, "test_messages", "legacy", empty, "a.txt", "x").toString(), "Format exception [Cannot format given Object as a Number] for message key [legacy] in bundle [com.goodworkalan.verbiage.test_messages]. (This is a meta error message.)");
+    }
+
+    /** Test loading and formatting messages in an explicit locale. */
+    @Test
+    public void locale() {
+        String context = MessageTest.class.getCanonicalName();
+        Message message = new Message(Locale.US, context, "test_messages", "localized", null, 2.5, 3);
+        assertSame(message.getLocale(), Locale.US);
+        assertEquals(message.toString(), "Sample 2.50 of 3.");
+        assertEquals(message.toString(Locale.FRANCE), "Echantillon 2,50 de 3.");
+        assertEquals(message.toString(Locale.US), "Sample 2.50 of 3.");
+        assertEquals(new Message(Locale.FRANCE, context, "test_messages", "localized", null, 2.5, 3).toString(), "Echantillon 2,50 de 3.");
+        assertEquals(new Message(Locale.FRANCE, context, "test_messages", "localized", null, 2.5, 3).snapshot().toString(), "Echantillon 2,50 de 3.");
+        StringBuilder builder = new StringBuilder();
+        message.formatTo(builder, Locale.FRANCE);
+        assertEquals(builder.toString(), "Echantillon 2,50 de 3.");
+        assertEquals(new Message(Locale.FRANCE, "Default", "test_messages", "localized", null).toString(Locale.US), "Message bundle context [Default] resolves to the default package. Message key is [localized]. (This is a meta error message.)");
+    }
+
+    /** Test that a snapshot keeps only the selected values. */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void snapshot() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        Map<String, Object> subMap = new HashMap<String, Object>();
+        map.put("a", "b");
+        map.put("b", subMap);
+        map.put("unused", new Object());
+        subMap.put("c", "World");
+        Message message = makeMessage("two", map);
+        Message snapshot = message.snapshot();
+        subMap.put("c", "Moon");
+        map.put("a", "c");
+        assertEquals(message.toString(), "Hello, Moon, c.");
+        assertEquals(snapshot.toString(), "Hello, World, b.");
+        assertEquals(snapshot.get("b.c"), "World");
+        assertEquals(snapshot.getVariables().size(), 2);
+        assertNull(snapshot.get("unused"));
+        assertSame(snapshot.snapshot(), snapshot);
+        try {
+            ((Map<Object, Object>) snapshot.getVariables()).put("a", "d");
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        Message positioned = new Message(MessageTest.class.getCanonicalName(), "test_messages", "positioned", Collections.singletonMap("fred", "3"), "1", "2");
+        assertEquals(positioned.snapshot().toString(), "First: 1, Second: 2, Third: 3.");
+        assertEquals(makeMessage("one", map).snapshot().toString(), makeMessage("one", map).toString());
+        assertEquals(makeMessage("bad_argument", map).snapshot().toString(), makeMessage("bad_argument", map).toString());
+    }
+
     /** Test array index out of range. */
     @Test
     public void arrayIndexOutOfRange() {
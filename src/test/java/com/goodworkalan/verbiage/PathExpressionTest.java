@@ -0,0 +1,137 @@
+package com.goodworkalan.verbiage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the PathExpression class.
+ *
+ * @author Alan Gutierrez
+ */
+public class PathExpressionTest {
+    /**
+     * Create a graph of maps, lists and arrays.
+     *
+     * @return A variables map.
+     */
+    private Map<String, Object> makeVariables() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("a", Collections.singletonMap("b", Arrays.asList("c", "d")));
+        map.put("e", new Object[] { 1, 2 });
+        return map;
+    }
+
+    /** Check a deep path through maps and lists. */
+    @Test
+    public void deep() {
+        assertEquals(new PathExpression("a.b.1").getValue(makeVariables()), "d");
+    }
+
+    /** Check an array index. */
+    @Test
+    public void array() {
+        assertEquals(new PathExpression("e.1").getValue(makeVariables()), 2);
+    }
+
+    /** Check primitive array indexes. */
+    @Test
+    public void primitiveArray() {
+        Map<String, Object> variables = makeVariables();
+        variables.put("i", new int[] { 1, 2 });
+        variables.put("l", new long[] { 3L });
+        variables.put("d", new double[] { 4.5 });
+        variables.put("c", new char[] { 'x' });
+        assertEquals(new PathExpression("i.1").getValue(variables), 2);
+        assertEquals(new PathExpression("l.0").getValue(variables), 3L);
+        assertEquals(new PathExpression("d.0").getValue(variables), 4.5);
+        assertEquals(new PathExpression("c.0").getValue(variables), 'x');
+        assertNull(new PathExpression("i.2").get(variables));
+        assertNull(new PathExpression("i.a").get(variables));
+        Arguments arguments = new Arguments(0);
+        assertSame(new PathExpression("l.0").evaluate(variables, null, arguments), PathExpression.BOUND);
+        assertEquals(new PathExpression("c.0").evaluate(variables, null, arguments), 'x');
+        assertEquals(arguments.size(), 1);
+        assertEquals(arguments.getType(0), Arguments.LONG);
+        assertEquals(arguments.getLong(0), 3L);
+    }
+
+    /** Check that a missing path is null. */
+    @Test
+    public void missing() {
+        assertNull(new PathExpression("a.b.2").get(makeVariables()));
+        assertNull(new PathExpression("e.f").get(makeVariables()));
+    }
+
+    /** Check that a missing path raises an exception. */
+    @Test(expectedExceptions = NoSuchElementException.class)
+    public void noSuchElement() {
+        new PathExpression("e.2").getValue(makeVariables());
+    }
+
+    /** Check that an index into a map is an error. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void indexMap() {
+        new PathExpression("a.0").getValue(makeVariables());
+    }
+
+    /** Check that an invalid path part is an error. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalid() {
+        new PathExpression("a.!");
+    }
+
+    /** Check that an empty path part is an error. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void empty() {
+        new PathExpression("a..b");
+    }
+
+    /** Check dereferencing positioned arguments. */
+    @Test
+    public void positioned() {
+        Arguments positioned = new Arguments(new Object[] { "a", Arrays.asList("b", "c") });
+        assertEquals(new PathExpression("$2.1").getValue(makeVariables(), positioned), "c");
+        assertEquals(new PathExpression("a.b.0").getValue(makeVariables(), positioned), "c");
+        assertNull(new PathExpression("$3").get(new Object[] { "a", "b" }));
+        assertNull(new PathExpression("$3").get(makeVariables(), positioned));
+    }
+
+    /** Check a positioned argument past the end of the positioned arguments. */
+    @Test(expectedExceptions = NoSuchElementException.class)
+    public void noSuchPositioned() {
+        new PathExpression("$3").getValue(makeVariables(), new Arguments(new Object[] { "a" }));
+    }
+
+    /** Check that a path that is only a positioned argument name is bound directly. */
+    @Test
+    public void argument() {
+        assertEquals(new PathExpression("$2").getArgument(), 1);
+        assertEquals(new PathExpression("$2.a").getArgument(), -1);
+        assertEquals(new PathExpression("a").getArgument(), -1);
+    }
+
+    /** Check that evaluation reports missing and invalid paths without exceptions. */
+    @Test
+    public void evaluate() {
+        assertSame(new PathExpression("a.b.2").evaluate(makeVariables(), null), PathExpression.MISSING);
+        assertSame(new PathExpression("$2").evaluate(makeVariables(), new Arguments(new Object[0])), PathExpression.MISSING);
+        assertSame(new PathExpression("a.0").evaluate(makeVariables(), null), PathExpression.INVALID);
+        assertEquals(new PathExpression("e.0").evaluate(makeVariables(), null), 1);
+    }
+
+    /** Check that path expressions are cached. */
+    @Test
+    public void valueOf() {
+        assertSame(PathExpression.valueOf("a.b.1"), PathExpression.valueOf("a.b.1"));
+        assertEquals(PathExpression.valueOf("a.b.1").toString(), "a.b.1");
+    }
+}
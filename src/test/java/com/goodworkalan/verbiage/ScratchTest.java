@@ -0,0 +1,48 @@
+package com.goodworkalan.verbiage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the Scratch class.
+ *
+ * @author Alan Gutierrez
+ */
+public class ScratchTest {
+    /** Check that a released scratch is reused by the same thread. */
+    @Test
+    public void reuse() {
+        Scratch scratch = Scratch.acquire();
+        scratch.release();
+        Scratch reused = Scratch.acquire();
+        assertSame(reused, scratch);
+        reused.release();
+    }
+
+    /** Check that a nested acquisition gets a different scratch. */
+    @Test
+    public void nested() {
+        Scratch outer = Scratch.acquire();
+        Scratch inner = Scratch.acquire();
+        assertNotSame(inner, outer);
+        inner.release();
+        outer.release();
+    }
+
+    /** Check that the buffers are cleared on release. */
+    @Test
+    public void release() {
+        Scratch scratch = Scratch.acquire();
+        scratch.getBuilder().append("Hello");
+        scratch.getArguments().add("a");
+        scratch.getArguments().add(1L);
+        scratch.release();
+        scratch = Scratch.acquire();
+        assertEquals(scratch.getBuilder().length(), 0);
+        assertEquals(scratch.getArguments().size(), 0);
+        scratch.release();
+    }
+}
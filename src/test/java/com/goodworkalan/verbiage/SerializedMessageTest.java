@@ -0,0 +1,185 @@
+package com.goodworkalan.verbiage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the compact serialized form of messages.
+ *
+ * @author Alan Gutierrez
+ */
+public class SerializedMessageTest {
+    /**
+     * Serialize and deserialize the given object.
+     *
+     * @param object
+     *            The object.
+     * @return The deserialized object.
+     * @exception Exception
+     *                For any error.
+     */
+    private Object serialize(Object object) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    /**
+     * Write the compact form of the given message and read it back.
+     *
+     * @param message
+     *            The message.
+     * @return The message that was read.
+     * @exception IOException
+     *                For any I/O error.
+     */
+    private Message copy(Message message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        message.writeTo(out);
+        out.close();
+        return Message.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    /**
+     * Create a message in this package with the given key and variables.
+     *
+     * @param key
+     *            The message key.
+     * @param variables
+     *            The map of variables.
+     * @return A message.
+     */
+    private Message makeMessage(String key, Map<?, ?> variables) {
+        return new Message(SerializedMessageTest.class.getCanonicalName(), "test_messages", key, variables);
+    }
+
+    /** Check that only the values selected by the template are written. */
+    @Test
+    public void selected() throws Exception {
+        Map<String, Object> b = new HashMap<String, Object>();
+        b.put("c", "World");
+        b.put("d", new Object());
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("a", "Hi");
+        variables.put("b", b);
+        variables.put("unused", new Object());
+        Message message = (Message) serialize(makeMessage("two", variables));
+        assertEquals(message.toString(), "Hello, World, Hi.");
+        assertEquals(message.get("b.c"), "World");
+        assertNull(message.get("b.d"));
+        assertNull(message.get("unused"));
+        assertEquals(message.getVariables().size(), 2);
+        assertEquals(message.getMessageKey(), "two");
+        assertEquals(copy(message).toString(), "Hello, World, Hi.");
+    }
+
+    /**
+     * Check rendering a message read from its compact form in another locale,
+     * which falls back to the locale in which the message was written when
+     * the template of the other locale selects a path that was not written.
+     */
+    @Test
+    public void locale() throws Exception {
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("a", "1");
+        variables.put("b", "2");
+        variables.put("name", "Alan");
+        variables.put("title", "M.");
+        Message greet = (Message) serialize(new Message(Locale.ENGLISH, SerializedMessageTest.class.getCanonicalName(), "test_messages", "greet", variables));
+        assertEquals(greet.toString(Locale.FRENCH), "B=2 A=1.");
+        Message message = new Message(Locale.ENGLISH, SerializedMessageTest.class.getCanonicalName(), "test_messages", "titled", variables);
+        assertEquals(message.toString(Locale.FRENCH), "Bonjour M. Alan.");
+        Message copy = (Message) serialize(message);
+        assertEquals(copy.getVariables().keySet(), Collections.singleton("name"));
+        assertEquals(copy.toString(Locale.FRENCH), "Hello Alan.");
+        assertEquals(message.snapshot().toString(Locale.FRENCH), "Hello Alan.");
+    }
+
+    /** Check writing positioned and primitive arguments. */
+    @Test
+    public void primitives() throws Exception {
+        Message message = Message.builder(SerializedMessageTest.class.getCanonicalName(), "test_messages", "primitives").arg(7).arg(1.5).arg(255L).build();
+        assertEquals(copy(message).toString(), message.toString());
+        assertEquals(serialize(message).toString(), message.toString());
+        message = new Message(SerializedMessageTest.class.getCanonicalName(), "test_messages", "positioned", Collections.singletonMap("fred", "3"), "1", "2");
+        assertEquals(copy(message).toString(), "First: 1, Second: 2, Third: 3.");
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put("samples", new double[] { 1, 2.5 });
+        variables.put("ids", new long[] { 255 });
+        variables.put("flags", new boolean[] { true });
+        message = makeMessage("primitive_array", variables);
+        assertEquals(copy(message).toString(), message.toString());
+    }
+
+    /** Check that serializable values are serialized as objects. */
+    @Test
+    public void object() throws Exception {
+        Message message = makeMessage("three", Collections.singletonMap("f", Arrays.asList(1, Arrays.asList("a"))));
+        assertEquals(message.toString(), "1 [a].");
+        Message copy = (Message) serialize(message);
+        assertEquals(copy.get("f.1"), Arrays.asList("a"));
+        assertEquals(copy.toString(), "1 [a].");
+    }
+
+    /** Check that a subclass of message is read back as a plain message. */
+    @Test
+    public void subclass() throws Exception {
+        Message message = new Message(SerializedMessageTest.class.getCanonicalName(), "test_messages", "one", Collections.singletonMap("b", Collections.singletonMap("c", "World"))) {
+            /** The serial version id. */
+            private final static long serialVersionUID = 1L;
+
+            public String toString() {
+                return "Overridden.";
+            }
+        };
+        Message copy = (Message) serialize(message);
+        assertEquals(copy.getClass(), Message.class);
+        assertEquals(copy.toString(), "Hello, World.");
+    }
+
+    /** Check that missing paths are still reported as missing. */
+    @Test
+    public void missing() throws Exception {
+        Message message = makeMessage("one", Collections.emptyMap());
+        assertEquals(serialize(message).toString(), message.toString());
+        message = makeMessage("no_such_key", Collections.emptyMap());
+        assertEquals(serialize(message).toString(), message.toString());
+    }
+
+    /** Check that long strings are written. */
+    @Test
+    public void longString() throws Exception {
+        char[] characters = new char[70000];
+        Arrays.fill(characters, '\u20ac');
+        String string = new String(characters);
+        Message message = makeMessage("one", Collections.singletonMap("b", Collections.singletonMap("c", string)));
+        assertEquals(copy(message).get("b.c"), string);
+    }
+
+    /** Check that an exception with a message can be serialized. */
+    @Test
+    public void exception() throws Exception {
+        VerbiageException e = new VerbiageException(makeMessage("one", Collections.singletonMap("b", Collections.singletonMap("c", "World"))));
+        VerbiageException copy = (VerbiageException) serialize(e);
+        assertEquals(copy.getMessage(), "Hello, World.");
+        assertEquals(copy.get("b.c"), "World");
+    }
+}
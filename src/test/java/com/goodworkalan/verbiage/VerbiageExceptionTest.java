@@ -0,0 +1,116 @@
+package com.goodworkalan.verbiage;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the VerbiageException and VerbiageRuntimeException classes.
+ *
+ * @author Alan Gutierrez
+ */
+public class VerbiageExceptionTest {
+    /**
+     * A message that counts the number of times it is rendered.
+     */
+    private final static class CountingMessage extends Message {
+        /** The serial version id. */
+        private final static long serialVersionUID = 1L;
+
+        /** The number of times the message was rendered. */
+        public int count;
+
+        /**
+         * Create a counting message with the given message key.
+         *
+         * @param key
+         *            The message key.
+         */
+        public CountingMessage(String key) {
+            super(VerbiageExceptionTest.class.getCanonicalName(), "test_messages", key, Collections.singletonMap("b", Collections.singletonMap("c", "World")));
+        }
+
+        /**
+         * Render the message and count the rendering.
+         *
+         * @return The rendered message.
+         */
+        public String toString() {
+            count++;
+            return super.toString();
+        }
+    }
+
+    /** Check that the checked exception message is rendered once. */
+    @Test
+    public void checked() {
+        CountingMessage message = new CountingMessage("one");
+        IllegalStateException cause = new IllegalStateException();
+        VerbiageException e = new VerbiageException(message, cause);
+        assertEquals(message.count, 0);
+        assertEquals(e.getMessage(), "Hello, World.");
+        assertEquals(e.getMessage(), "Hello, World.");
+        assertEquals(message.count, 1);
+        assertSame(e.getCause(), cause);
+        assertEquals(e.getMessageKey(), "one");
+        assertEquals(e.get("b.c"), "World");
+        assertTrue(e.getStackTrace().length != 0);
+    }
+
+    /** Check that the unchecked exception message is rendered once. */
+    @Test
+    public void unchecked() {
+        CountingMessage message = new CountingMessage("one");
+        VerbiageRuntimeException e = new VerbiageRuntimeException(message);
+        assertEquals(message.count, 0);
+        assertEquals(e.toString(), VerbiageRuntimeException.class.getName() + ": Hello, World.");
+        assertEquals(e.getMessage(), "Hello, World.");
+        assertEquals(message.count, 1);
+        assertEquals(e.getContext(), VerbiageExceptionTest.class.getCanonicalName());
+    }
+
+    /**
+     * Serialize and deserialize the given object.
+     *
+     * @param object
+     *            The object.
+     * @return The deserialized object.
+     * @exception Exception
+     *                For any error.
+     */
+    private Object serialize(Object object) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    /** Check that exceptions are serialized with their messages. */
+    @Test
+    public void serialize() throws Exception {
+        VerbiageException checked = new VerbiageException(new CountingMessage("one"));
+        assertEquals(checked.getMessage(), "Hello, World.");
+        VerbiageException checkedCopy = (VerbiageException) serialize(checked);
+        assertEquals(checkedCopy.getMessage(), "Hello, World.");
+        assertEquals(checkedCopy.get("b.c"), "World");
+        VerbiageRuntimeException unchecked = (VerbiageRuntimeException) serialize(new VerbiageRuntimeException(new CountingMessage("one")));
+        assertEquals(unchecked.getMessage(), "Hello, World.");
+        assertEquals(unchecked.getMessageKey(), "one");
+    }
+
+    /** Check creating exceptions without stack traces. */
+    @Test
+    public void noStackTrace() {
+        assertEquals(new VerbiageException(new CountingMessage("one"), null, false).getStackTrace().length, 0);
+        assertEquals(new VerbiageRuntimeException(new CountingMessage("one"), null, false).getStackTrace().length, 0);
+    }
+}